@@ -0,0 +1,145 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.benchmark;
+
+/**
+ * Document shapes used by the benchmarks. Each shape is a JavaScript
+ * expression that is valid for both Rhino and Nashorn, so that both engines
+ * are measured on the same data.
+ *
+ * @author Tal Liron
+ */
+public enum DocumentShape
+{
+	/**
+	 * A single level of mixed scalars, like a typical user or product record.
+	 */
+	FLAT( flat() ),
+
+	/**
+	 * Documents nested ten levels deep, each level with a few scalars.
+	 */
+	NESTED( nested() ),
+
+	/**
+	 * A long array of numbers, an array of strings and an array of small
+	 * documents.
+	 */
+	ARRAY_HEAVY( arrayHeavy() ),
+
+	/**
+	 * A few very large string fields, like stored articles or rendered
+	 * fragments.
+	 */
+	LARGE_STRINGS( largeStrings() ),
+
+	/**
+	 * Many dates and regular expressions, like event logs and rule sets.
+	 */
+	DATES_AND_REGEXPS( datesAndRegExps() );
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The JavaScript expression that creates a document of this shape.
+	 *
+	 * @return The script
+	 */
+	public String getScript()
+	{
+		return script;
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private DocumentShape( String script )
+	{
+		this.script = "(" + script + ")";
+	}
+
+	private final String script;
+
+	private static String flat()
+	{
+		StringBuilder s = new StringBuilder( "{" );
+		for( int i = 0; i < 10; i++ )
+		{
+			s.append( "name" ).append( i ).append( ":'value number " ).append( i ).append( "'," );
+			s.append( "count" ).append( i ).append( ':' ).append( i * 17 ).append( ',' );
+			s.append( "ratio" ).append( i ).append( ':' ).append( i + 0.25 ).append( ',' );
+			s.append( "enabled" ).append( i ).append( ':' ).append( i % 2 == 0 ).append( ',' );
+		}
+		s.append( "missing:null}" );
+		return s.toString();
+	}
+
+	private static String nested()
+	{
+		StringBuilder s = new StringBuilder();
+		for( int i = 0; i < 10; i++ )
+			s.append( "{level:" ).append( i ).append( ",label:'level " ).append( i ).append( "',weight:" ).append( i + 0.5 ).append( ",child:" );
+		s.append( "null" );
+		for( int i = 0; i < 10; i++ )
+			s.append( '}' );
+		return s.toString();
+	}
+
+	private static String arrayHeavy()
+	{
+		StringBuilder s = new StringBuilder( "{values:[" );
+		for( int i = 0; i < 1000; i++ )
+		{
+			if( i > 0 )
+				s.append( ',' );
+			s.append( i * 1.5 );
+		}
+		s.append( "],tags:[" );
+		for( int i = 0; i < 100; i++ )
+		{
+			if( i > 0 )
+				s.append( ',' );
+			s.append( "'tag" ).append( i ).append( '\'' );
+		}
+		s.append( "],items:[" );
+		for( int i = 0; i < 100; i++ )
+		{
+			if( i > 0 )
+				s.append( ',' );
+			s.append( "{sku:'item" ).append( i ).append( "',quantity:" ).append( i ).append( ",price:" ).append( i + 0.99 ).append( '}' );
+		}
+		s.append( "]}" );
+		return s.toString();
+	}
+
+	private static String largeStrings()
+	{
+		// The engines build the large strings themselves, so that the script
+		// source stays small
+		return "{title:'A large document',body:new Array(65537).join('lorem ipsum '),summary:new Array(4097).join('dolor sit amet '),footer:new Array(1025).join('x')}";
+	}
+
+	private static String datesAndRegExps()
+	{
+		StringBuilder s = new StringBuilder( "{created:new Date(1483228800000),events:[" );
+		for( int i = 0; i < 50; i++ )
+		{
+			if( i > 0 )
+				s.append( ',' );
+			s.append( "{at:new Date(" ).append( 1483228800000L + i * 60000L ).append( "),rule:/^event-" ).append( i % 5 ).append( "-[a-z]+$/i}" );
+		}
+		s.append( "]}" );
+		return s.toString();
+	}
+}
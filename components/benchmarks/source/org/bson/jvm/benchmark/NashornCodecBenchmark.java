@@ -0,0 +1,265 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.benchmark;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.jvm.Bson;
+import org.bson.jvm.BsonImplementation;
+import org.bson.jvm.nashorn.NashornBsonImplementation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mongodb.MongoClient;
+
+import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import jdk.nashorn.internal.objects.NativeArray;
+import jdk.nashorn.internal.runtime.Context;
+import jdk.nashorn.internal.runtime.ErrorManager;
+import jdk.nashorn.internal.runtime.ScriptFunction;
+import jdk.nashorn.internal.runtime.ScriptObject;
+import jdk.nashorn.internal.runtime.ScriptRuntime;
+import jdk.nashorn.internal.runtime.Source;
+import jdk.nashorn.internal.runtime.options.Options;
+
+/**
+ * Encode/decode throughput of the Nashorn BSON codecs
+ * ({@link org.bson.jvm.nashorn.ScriptObjectCodec},
+ * {@link org.bson.jvm.nashorn.NativeArrayCodec},
+ * {@link org.bson.jvm.nashorn.ScriptObjectMirrorCodec}) and of
+ * {@link Bson#to(Object)} and {@link Bson#toRaw(Object)}.
+ * <p>
+ * Run with "-prof gc" to also get allocation rates.
+ * <p>
+ * The mirror benchmark wraps the document in a different global than the
+ * current one, so that the codec cannot unwrap it and must walk the mirror, as
+ * happens for objects that cross script contexts.
+ *
+ * @author Tal Liron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NashornCodecBenchmark
+{
+	//
+	// Parameters
+	//
+
+	@Param(
+	{
+		"FLAT", "NESTED", "ARRAY_HEAVY", "LARGE_STRINGS", "DATES_AND_REGEXPS"
+	})
+	public DocumentShape shape;
+
+	//
+	// Lifecycle
+	//
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup()
+	{
+		PrintWriter out = new PrintWriter( System.out, true );
+		PrintWriter err = new PrintWriter( System.err, true );
+		Options options = new Options( "nashorn", err );
+		Context context = new Context( options, new ErrorManager( err ), out, err, Thread.currentThread().getContextClassLoader() );
+		global = context.createGlobal();
+		Context.setGlobal( global );
+
+		BsonImplementation implementation = new NashornBsonImplementation();
+		Bson.setImplementation( implementation );
+		codecRegistry = implementation.getCodecRegistry( MongoClient.getDefaultCodecRegistry() );
+
+		ScriptFunction script = context.compileScript( Source.sourceFor( shape.name(), shape.getScript() ), global );
+		document = (ScriptObject) ScriptRuntime.apply( script, global );
+		String[] keys = document.getOwnKeys( true );
+		Object[] values = new Object[keys.length];
+		for( int i = 0; i < keys.length; i++ )
+			values[i] = document.get( keys[i] );
+		array = (NativeArray) NativeArray.construct( true, null, values.length );
+		for( int i = 0; i < values.length; i++ )
+			array.set( i, values[i], 0 );
+		mirror = (ScriptObjectMirror) ScriptObjectMirror.wrap( document, context.createGlobal() );
+		documentCodec = codec( document );
+		arrayCodec = codec( array );
+		mirrorCodec = codec( mirror );
+		lazyDocumentCodec = (Codec<Object>) codecRegistry.get( implementation.getLazyDocumentClass() );
+		templateDocumentCodec = (Codec<Object>) implementation.getTemplateCodecRegistry( codecRegistry, 1 ).get( implementation.getDocumentClass() );
+		firstKey = keys[0];
+
+		buffer = new BasicOutputBuffer();
+		encodeDocument();
+		encodedDocument = buffer.toByteArray();
+		encodeArray();
+		encodedArray = buffer.toByteArray();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		Bson.setImplementation( null );
+		Context.setGlobal( null );
+	}
+
+	//
+	// Benchmarks
+	//
+
+	@Benchmark
+	public int encodeScriptObject()
+	{
+		return encodeDocument();
+	}
+
+	@Benchmark
+	public Object decodeScriptObject()
+	{
+		return documentCodec.decode( new BsonBinaryReader( ByteBuffer.wrap( encodedDocument ) ), decoderContext );
+	}
+
+	@Benchmark
+	public Object decodeScriptObjectWithTemplate()
+	{
+		return templateDocumentCodec.decode( new BsonBinaryReader( ByteBuffer.wrap( encodedDocument ) ), decoderContext );
+	}
+
+	@Benchmark
+	public Object decodeLazyScriptObjectOneField()
+	{
+		ScriptObject document = (ScriptObject) lazyDocumentCodec.decode( new BsonBinaryReader( ByteBuffer.wrap( encodedDocument ) ), decoderContext );
+		return document.get( firstKey );
+	}
+
+	@Benchmark
+	public int encodeScriptObjectMirror()
+	{
+		buffer.truncateToPosition( 0 );
+		mirrorCodec.encode( new BsonBinaryWriter( buffer ), mirror, encoderContext );
+		return buffer.getPosition();
+	}
+
+	@Benchmark
+	public int encodeNativeArray()
+	{
+		return encodeArray();
+	}
+
+	@Benchmark
+	public Object decodeNativeArray()
+	{
+		BsonReader reader = new BsonBinaryReader( ByteBuffer.wrap( encodedArray ) );
+		reader.readStartDocument();
+		reader.readBsonType();
+		reader.readName();
+		Object array = arrayCodec.decode( reader, decoderContext );
+		reader.readEndDocument();
+		return array;
+	}
+
+	@Benchmark
+	public BsonDocument bsonTo()
+	{
+		return Bson.to( document );
+	}
+
+	@Benchmark
+	public RawBsonDocument bsonToRaw()
+	{
+		return Bson.toRaw( document );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final EncoderContext encoderContext = EncoderContext.builder().build();
+
+	private final DecoderContext decoderContext = DecoderContext.builder().build();
+
+	private ScriptObject global;
+
+	private CodecRegistry codecRegistry;
+
+	private ScriptObject document;
+
+	private NativeArray array;
+
+	private ScriptObjectMirror mirror;
+
+	private Codec<Object> documentCodec;
+
+	private Codec<Object> arrayCodec;
+
+	private Codec<Object> mirrorCodec;
+
+	private Codec<Object> lazyDocumentCodec;
+
+	private Codec<Object> templateDocumentCodec;
+
+	private String firstKey;
+
+	private BasicOutputBuffer buffer;
+
+	private byte[] encodedDocument;
+
+	private byte[] encodedArray;
+
+	@SuppressWarnings("unchecked")
+	private Codec<Object> codec( Object object )
+	{
+		return (Codec<Object>) codecRegistry.get( object.getClass() );
+	}
+
+	private int encodeDocument()
+	{
+		buffer.truncateToPosition( 0 );
+		documentCodec.encode( new BsonBinaryWriter( buffer ), document, encoderContext );
+		return buffer.getPosition();
+	}
+
+	private int encodeArray()
+	{
+		buffer.truncateToPosition( 0 );
+		BsonBinaryWriter writer = new BsonBinaryWriter( buffer );
+		writer.writeStartDocument();
+		writer.writeName( "array" );
+		arrayCodec.encode( writer, array, encoderContext );
+		writer.writeEndDocument();
+		return buffer.getPosition();
+	}
+}
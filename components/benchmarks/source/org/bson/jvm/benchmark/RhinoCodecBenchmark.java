@@ -0,0 +1,281 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.jvm.Bson;
+import org.bson.jvm.BsonImplementation;
+import org.bson.jvm.rhino.RhinoBsonImplementation;
+import org.mozilla.javascript.Callable;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mongodb.MongoClient;
+
+/**
+ * Encode/decode throughput of the Rhino BSON codecs
+ * ({@link org.bson.jvm.rhino.ScriptableCodec},
+ * {@link org.bson.jvm.rhino.NativeArrayCodec}) and of {@link Bson#to(Object)}
+ * and {@link Bson#toRaw(Object)}.
+ * <p>
+ * Run with "-prof gc" to also get allocation rates.
+ * <p>
+ * Rhino codecs can only decode inside a top call (they need the top call
+ * scope), so decode benchmarks go through
+ * {@link ScriptRuntime#doTopCall(Callable, Context, Scriptable, Scriptable, Object[])}
+ * the same way a script calling into the driver would.
+ *
+ * @author Tal Liron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RhinoCodecBenchmark
+{
+	//
+	// Parameters
+	//
+
+	@Param(
+	{
+		"FLAT", "NESTED", "ARRAY_HEAVY", "LARGE_STRINGS", "DATES_AND_REGEXPS"
+	})
+	public DocumentShape shape;
+
+	//
+	// Lifecycle
+	//
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setup()
+	{
+		context = Context.enter();
+		scope = context.initStandardObjects();
+
+		BsonImplementation implementation = new RhinoBsonImplementation();
+		Bson.setImplementation( implementation );
+		codecRegistry = implementation.getCodecRegistry( MongoClient.getDefaultCodecRegistry() );
+
+		document = (Scriptable) context.evaluateString( scope, shape.getScript(), shape.name(), 1, null );
+		Object[] ids = ScriptableObject.getPropertyIds( document );
+		Object[] values = new Object[ids.length];
+		for( int i = 0; i < ids.length; i++ )
+			values[i] = ScriptableObject.getProperty( document, ids[i].toString() );
+		array = (NativeArray) context.newArray( scope, values );
+		documentCodec = codec( document );
+		arrayCodec = codec( array );
+		lazyDocumentCodec = (Codec<Object>) codecRegistry.get( implementation.getLazyDocumentClass() );
+		templateDocumentCodec = (Codec<Object>) implementation.getTemplateCodecRegistry( codecRegistry, 1 ).get( implementation.getDocumentClass() );
+		firstKey = ids[0].toString();
+
+		buffer = new BasicOutputBuffer();
+		encodeDocument();
+		encodedDocument = buffer.toByteArray();
+		encodeArray();
+		encodedArray = buffer.toByteArray();
+
+		decodeDocument = new Callable()
+		{
+			public Object call( Context context, Scriptable scope, Scriptable thisObject, Object[] arguments )
+			{
+				return documentCodec.decode( new BsonBinaryReader( ByteBuffer.wrap( encodedDocument ) ), decoderContext );
+			}
+		};
+
+		decodeTemplateDocument = new Callable()
+		{
+			public Object call( Context context, Scriptable scope, Scriptable thisObject, Object[] arguments )
+			{
+				return templateDocumentCodec.decode( new BsonBinaryReader( ByteBuffer.wrap( encodedDocument ) ), decoderContext );
+			}
+		};
+
+		decodeLazyDocument = new Callable()
+		{
+			public Object call( Context context, Scriptable scope, Scriptable thisObject, Object[] arguments )
+			{
+				Scriptable document = (Scriptable) lazyDocumentCodec.decode( new BsonBinaryReader( ByteBuffer.wrap( encodedDocument ) ), decoderContext );
+				return ScriptableObject.getProperty( document, firstKey );
+			}
+		};
+
+		decodeArray = new Callable()
+		{
+			public Object call( Context context, Scriptable scope, Scriptable thisObject, Object[] arguments )
+			{
+				BsonReader reader = new BsonBinaryReader( ByteBuffer.wrap( encodedArray ) );
+				reader.readStartDocument();
+				reader.readBsonType();
+				reader.readName();
+				Object array = arrayCodec.decode( reader, decoderContext );
+				reader.readEndDocument();
+				return array;
+			}
+		};
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		Bson.setImplementation( null );
+		Context.exit();
+	}
+
+	//
+	// Benchmarks
+	//
+
+	@Benchmark
+	public int encodeScriptable()
+	{
+		return encodeDocument();
+	}
+
+	@Benchmark
+	public Object decodeScriptable()
+	{
+		return ScriptRuntime.doTopCall( decodeDocument, context, scope, scope, ScriptRuntime.emptyArgs );
+	}
+
+	@Benchmark
+	public Object decodeScriptableWithTemplate()
+	{
+		return ScriptRuntime.doTopCall( decodeTemplateDocument, context, scope, scope, ScriptRuntime.emptyArgs );
+	}
+
+	@Benchmark
+	public Object decodeLazyScriptableOneField()
+	{
+		return ScriptRuntime.doTopCall( decodeLazyDocument, context, scope, scope, ScriptRuntime.emptyArgs );
+	}
+
+	@Benchmark
+	public int encodeNativeArray()
+	{
+		return encodeArray();
+	}
+
+	@Benchmark
+	public Object decodeNativeArray()
+	{
+		return ScriptRuntime.doTopCall( decodeArray, context, scope, scope, ScriptRuntime.emptyArgs );
+	}
+
+	@Benchmark
+	public BsonDocument bsonTo()
+	{
+		return Bson.to( document );
+	}
+
+	@Benchmark
+	public RawBsonDocument bsonToRaw()
+	{
+		return Bson.toRaw( document );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final EncoderContext encoderContext = EncoderContext.builder().build();
+
+	private final DecoderContext decoderContext = DecoderContext.builder().build();
+
+	private Context context;
+
+	private Scriptable scope;
+
+	private CodecRegistry codecRegistry;
+
+	private Scriptable document;
+
+	private NativeArray array;
+
+	private Codec<Object> documentCodec;
+
+	private Codec<Object> arrayCodec;
+
+	private Codec<Object> lazyDocumentCodec;
+
+	private Codec<Object> templateDocumentCodec;
+
+	private String firstKey;
+
+	private BasicOutputBuffer buffer;
+
+	private byte[] encodedDocument;
+
+	private byte[] encodedArray;
+
+	private Callable decodeDocument;
+
+	private Callable decodeTemplateDocument;
+
+	private Callable decodeLazyDocument;
+
+	private Callable decodeArray;
+
+	@SuppressWarnings("unchecked")
+	private Codec<Object> codec( Object object )
+	{
+		return (Codec<Object>) codecRegistry.get( object.getClass() );
+	}
+
+	private int encodeDocument()
+	{
+		buffer.truncateToPosition( 0 );
+		documentCodec.encode( new BsonBinaryWriter( buffer ), document, encoderContext );
+		return buffer.getPosition();
+	}
+
+	private int encodeArray()
+	{
+		buffer.truncateToPosition( 0 );
+		BsonBinaryWriter writer = new BsonBinaryWriter( buffer );
+		writer.writeStartDocument();
+		writer.writeName( "array" );
+		arrayCodec.encode( writer, array, encoderContext );
+		writer.writeEndDocument();
+		return buffer.getPosition();
+	}
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.bson.jvm.rhino.NativeDateCodec;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and creating Rhino dates the way {@link NativeDateCodec} does,
+ * compared with calling "getTime" and the "Date" constructor in JavaScript.
+ *
+ * @author Tal Liron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RhinoDateBenchmark
+{
+	//
+	// Lifecycle
+	//
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		context = Context.enter();
+		scope = context.initStandardObjects();
+		date = context.newObject( scope, "Date", new Object[]
+		{
+			TIME
+		} );
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		Context.exit();
+	}
+
+	//
+	// Benchmarks
+	//
+
+	@Benchmark
+	public long getTime()
+	{
+		return NativeDateCodec.getTime( date );
+	}
+
+	@Benchmark
+	public long getTimeByMethodCall()
+	{
+		return ( (Number) ScriptableObject.callMethod( date, "getTime", null ) ).longValue();
+	}
+
+	@Benchmark
+	public Scriptable newDate()
+	{
+		return NativeDateCodec.newDate( TIME, context, scope );
+	}
+
+	@Benchmark
+	public Scriptable newDateByConstructor()
+	{
+		return context.newObject( scope, "Date", new Object[]
+		{
+			TIME
+		} );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final long TIME = 1234567890123L;
+
+	private Context context;
+
+	private Scriptable scope;
+
+	private Scriptable date;
+}
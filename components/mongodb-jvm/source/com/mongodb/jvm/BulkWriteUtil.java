@@ -0,0 +1,241 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.OutputBufferPool;
+import org.bson.jvm.internal.PooledOutputBuffer;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientException;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Bulk writes from an implementation-specific array of write model
+ * descriptors, such as a JavaScript array, without converting the
+ * descriptors one by one in the script.
+ * <p>
+ * A descriptor is a document with a "type" ("deleteMany", "deleteOne",
+ * "insertOne", "replaceOne", "updateMany" or "updateOne") and the fields for
+ * that type: "filter", "document", "replacement", "update" and "options" (of
+ * which only "upsert" is supported). The whole array is encoded with the
+ * collection's codec registry in a single pass.
+ *
+ * @author Tal Liron
+ */
+public class BulkWriteUtil
+{
+	//
+	// Static operations
+	//
+
+	/**
+	 * Converts an array of write model descriptors to write models. The
+	 * documents of the models are raw slices of the encoded array, so they
+	 * are written to the server as is.
+	 * <p>
+	 * Like the driver, we make sure that the top-level field names of updates
+	 * are all update operators.
+	 *
+	 * @param operations
+	 *        The descriptors
+	 * @param codecRegistry
+	 *        The codec registry, usually the collection's
+	 * @return The write models
+	 * @throws MongoClientException
+	 *         If a descriptor is not supported
+	 */
+	public static List<WriteModel<RawBsonDocument>> toWriteModels( Object operations, CodecRegistry codecRegistry )
+	{
+		OutputBufferPool pool = OutputBufferPool.getDefault();
+		PooledOutputBuffer buffer = pool.acquire();
+		try
+		{
+			BsonBinaryWriter writer = new BsonBinaryWriter( buffer );
+			writer.writeStartDocument();
+			writer.writeName( OPERATIONS );
+			BsonUtil.writeChild( operations, writer, EncoderContext.builder().build(), CodecCache.forRegistry( codecRegistry ) );
+			writer.writeEndDocument();
+
+			// We read the pooled buffer in place: the documents are copied out
+			// of it, so it can be released when we are done
+			ByteBuffer encoded = buffer.getByteBuffers().get( 0 ).asNIO();
+			byte[] bytes = encoded.array();
+			BsonBinaryReader reader = new BsonBinaryReader( encoded );
+			reader.readStartDocument();
+			if( reader.readBsonType() != BsonType.ARRAY )
+				throw new MongoClientException( "Write model descriptors must be an array" );
+			reader.skipName();
+			reader.readStartArray();
+			List<WriteModel<RawBsonDocument>> models = new ArrayList<WriteModel<RawBsonDocument>>();
+			while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
+			{
+				if( reader.getCurrentBsonType() != BsonType.DOCUMENT )
+					throw new MongoClientException( "Unsupported write model: " + reader.getCurrentBsonType() );
+				models.add( readWriteModel( reader, bytes ) );
+			}
+			return models;
+		}
+		finally
+		{
+			pool.release( buffer );
+		}
+	}
+
+	/**
+	 * Converts an array of write model descriptors to write models and
+	 * submits them in one call to the driver, which splits them into batches
+	 * of at most the server's maximum write batch size.
+	 *
+	 * @param collection
+	 *        The collection (its document class does not matter)
+	 * @param operations
+	 *        The descriptors
+	 * @param options
+	 *        The bulk write options or null
+	 * @return The result
+	 * @throws MongoBulkWriteException
+	 *         If writes failed
+	 * @throws MongoClientException
+	 *         If a descriptor is not supported
+	 */
+	public static BulkWriteResult bulkWrite( MongoCollection<?> collection, Object operations, BulkWriteOptions options )
+	{
+		if( options == null )
+			options = new BulkWriteOptions();
+		List<WriteModel<RawBsonDocument>> models = toWriteModels( operations, collection.getCodecRegistry() );
+		return collection.withDocumentClass( RawBsonDocument.class ).bulkWrite( models, options );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final String OPERATIONS = "operations";
+
+	private static WriteModel<RawBsonDocument> readWriteModel( BsonBinaryReader reader, byte[] bytes )
+	{
+		String type = null;
+		RawBsonDocument filter = null, document = null, update = null;
+		UpdateOptions options = new UpdateOptions();
+
+		reader.readStartDocument();
+		while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
+		{
+			String name = reader.readName();
+			BsonType bsonType = reader.getCurrentBsonType();
+			if( "type".equals( name ) && ( bsonType == BsonType.STRING ) )
+				type = reader.readString();
+			else if( "filter".equals( name ) && ( bsonType == BsonType.DOCUMENT ) )
+				filter = readDocument( reader, bytes );
+			else if( ( "document".equals( name ) || "replacement".equals( name ) ) && ( bsonType == BsonType.DOCUMENT ) )
+				document = readDocument( reader, bytes );
+			else if( "update".equals( name ) && ( bsonType == BsonType.DOCUMENT ) )
+			{
+				validateUpdate( reader );
+				update = readDocument( reader, bytes );
+			}
+			else if( "options".equals( name ) && ( bsonType == BsonType.DOCUMENT ) )
+				readUpdateOptions( reader, options );
+			else
+				reader.skipValue();
+		}
+		reader.readEndDocument();
+
+		if( "insertOne".equals( type ) )
+			return new InsertOneModel<RawBsonDocument>( required( document, "document" ) );
+		else if( "deleteOne".equals( type ) )
+			return new DeleteOneModel<RawBsonDocument>( required( filter, "filter" ) );
+		else if( "deleteMany".equals( type ) )
+			return new DeleteManyModel<RawBsonDocument>( required( filter, "filter" ) );
+		else if( "replaceOne".equals( type ) )
+			return new ReplaceOneModel<RawBsonDocument>( required( filter, "filter" ), required( document, "replacement" ), options );
+		else if( "updateOne".equals( type ) )
+			return new UpdateOneModel<RawBsonDocument>( required( filter, "filter" ), required( update, "update" ), options );
+		else if( "updateMany".equals( type ) )
+			return new UpdateManyModel<RawBsonDocument>( required( filter, "filter" ), required( update, "update" ), options );
+		throw new MongoClientException( "Unsupported write model type: " + type );
+	}
+
+	/**
+	 * Copies the embedded document at the reader's position, without
+	 * decoding it.
+	 */
+	private static RawBsonDocument readDocument( BsonBinaryReader reader, byte[] bytes )
+	{
+		int start = reader.getBsonInput().getPosition();
+		int length = ( bytes[start] & 0xff ) | ( ( bytes[start + 1] & 0xff ) << 8 ) | ( ( bytes[start + 2] & 0xff ) << 16 ) | ( ( bytes[start + 3] & 0xff ) << 24 );
+		reader.skipValue();
+		return new RawBsonDocument( Arrays.copyOfRange( bytes, start, start + length ) );
+	}
+
+	private static RawBsonDocument required( RawBsonDocument document, String name )
+	{
+		if( document == null )
+			throw new MongoClientException( "Write model must have a \"" + name + "\" document" );
+		return document;
+	}
+
+	private static void validateUpdate( BsonReader reader )
+	{
+		reader.mark();
+		reader.readStartDocument();
+		while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
+		{
+			String name = reader.readName();
+			if( !name.startsWith( "$" ) )
+				throw new IllegalArgumentException( "Invalid BSON field name " + name );
+			reader.skipValue();
+		}
+		reader.reset();
+	}
+
+	private static void readUpdateOptions( BsonReader reader, UpdateOptions options )
+	{
+		reader.readStartDocument();
+		while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
+		{
+			String name = reader.readName();
+			if( "upsert".equals( name ) && ( reader.getCurrentBsonType() == BsonType.BOOLEAN ) )
+				options.upsert( reader.readBoolean() );
+			else
+				reader.skipValue();
+		}
+		reader.readEndDocument();
+	}
+
+	private BulkWriteUtil()
+	{
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm;
+
+import java.util.ArrayList;
+
+import org.bson.jvm.Bson;
+
+import com.mongodb.client.MongoCursor;
+
+/**
+ * Cursor operations that read many documents in a single call, returning them
+ * as an implementation-specific array (see
+ * {@link org.bson.jvm.BsonImplementation#createArray(Object[])}), so that
+ * scripts do not have to cross into the JVM once per document.
+ *
+ * @author Tal Liron
+ */
+public class MongoCursorUtil
+{
+	//
+	// Static operations
+	//
+
+	/**
+	 * Reads up to a number of documents from a cursor. Set the batch size of
+	 * the iterable to the same number to have each call correspond to a
+	 * server batch.
+	 *
+	 * @param cursor
+	 *        The cursor
+	 * @param size
+	 *        The maximum number of documents; as with MongoDB batch sizes, a
+	 *        negative size means the same as its absolute value
+	 * @return An array of documents, empty if the cursor is exhausted
+	 */
+	public static Object nextBatch( MongoCursor<?> cursor, int size )
+	{
+		return Bson.getImplementation().createArray( read( cursor, size >= 0 ? size : -Math.max( size, -Integer.MAX_VALUE ) ) );
+	}
+
+	/**
+	 * Reads all remaining documents from a cursor, up to an optional limit.
+	 * The cursor is not closed.
+	 *
+	 * @param cursor
+	 *        The cursor
+	 * @param limit
+	 *        The maximum number of documents, or 0 for no limit
+	 * @return An array of documents
+	 */
+	public static Object toArray( MongoCursor<?> cursor, int limit )
+	{
+		return Bson.getImplementation().createArray( read( cursor, limit > 0 ? limit : Integer.MAX_VALUE ) );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final int MAX_INITIAL_CAPACITY = 1024;
+
+	private static Object[] read( MongoCursor<?> cursor, int limit )
+	{
+		ArrayList<Object> documents = new ArrayList<Object>( Math.min( limit, MAX_INITIAL_CAPACITY ) );
+		while( ( documents.size() < limit ) && cursor.hasNext() )
+			documents.add( cursor.next() );
+		return documents.toArray();
+	}
+
+	private MongoCursorUtil()
+	{
+	}
+}
@@ -0,0 +1,608 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.bson.RawBsonDocument;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoClientException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * Buffers writes to a collection and sends them as bulk writes from a
+ * background thread. Many small writes, from many threads, thus cost a few
+ * round trips instead of one each.
+ * <p>
+ * A batch is written when the buffer holds enough writes for it, when the
+ * flush interval passes, when {@link #flush()} or {@link #close()} are
+ * called, and when the JVM shuts down.
+ * <p>
+ * The buffer holds a bounded number of writes. When it is full, adding blocks
+ * until there is room (back-pressure), or fails after a timeout.
+ * <p>
+ * Writes are not retried: a failed batch is reported to the
+ * {@link Listener}, if there is one, and its unwritten writes are counted.
+ * The listener is called from the flushing thread. Script engines should use
+ * a {@link QueueListener} instead, and handle its reports on their own
+ * threads.
+ * <p>
+ * Documents must be encoded before they are added (for example with
+ * {@link org.bson.jvm.Bson#toRaw(Object)}), because they are written from the
+ * background thread, on which script engines usually have no context.
+ *
+ * <p>
+ * Buffers are referenced until they are closed, so that they can be flushed
+ * when the JVM shuts down. A buffer that is never closed is thus kept, with
+ * its flushing thread, for the life of the JVM.
+ *
+ * @author Tal Liron
+ */
+public class WriteBehindBuffer
+{
+	//
+	// Types
+	//
+
+	/**
+	 * Notified of written batches. Called from the flushing thread, so it
+	 * must not call into script engines.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called after a batch is written.
+		 *
+		 * @param count
+		 *        The number of writes in the batch
+		 * @param result
+		 *        The result
+		 */
+		public void onFlush( int count, BulkWriteResult result );
+
+		/**
+		 * Called when a batch could not be written, or was written only in
+		 * part. For a {@link MongoBulkWriteException}, the exception has the
+		 * result of the writes that succeeded.
+		 *
+		 * @param models
+		 *        The writes in the batch
+		 * @param throwable
+		 *        The error
+		 */
+		public void onError( List<WriteModel<RawBsonDocument>> models, Throwable throwable );
+	}
+
+	/**
+	 * The outcome of a batch, as queued by a {@link QueueListener}.
+	 */
+	public static class Report
+	{
+		/**
+		 * Constructor.
+		 *
+		 * @param count
+		 *        The number of writes in the batch
+		 * @param result
+		 *        The result or null
+		 * @param error
+		 *        The error or null
+		 */
+		public Report( int count, BulkWriteResult result, Throwable error )
+		{
+			this.count = count;
+			this.result = result;
+			this.error = error;
+		}
+
+		/**
+		 * The number of writes in the batch.
+		 *
+		 * @return The count
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * The result, if the batch was written, even if only in part.
+		 *
+		 * @return The result or null
+		 */
+		public BulkWriteResult getResult()
+		{
+			return result;
+		}
+
+		/**
+		 * The error, if the batch was not written or was written only in part.
+		 *
+		 * @return The error or null
+		 */
+		public Throwable getError()
+		{
+			return error;
+		}
+
+		// //////////////////////////////////////////////////////////////////////////
+		// Private
+
+		private final int count;
+
+		private final BulkWriteResult result;
+
+		private final Throwable error;
+	}
+
+	/**
+	 * A listener that queues reports, so that they can be handled on other
+	 * threads by calling {@link #poll()}.
+	 */
+	public static class QueueListener implements Listener
+	{
+		/**
+		 * The oldest report not yet polled.
+		 *
+		 * @return The report or null if there are none
+		 */
+		public Report poll()
+		{
+			return reports.poll();
+		}
+
+		//
+		// Listener
+		//
+
+		public void onFlush( int count, BulkWriteResult result )
+		{
+			reports.add( new Report( count, result, null ) );
+		}
+
+		public void onError( List<WriteModel<RawBsonDocument>> models, Throwable throwable )
+		{
+			// A partially failed batch also has a result
+			BulkWriteResult result = throwable instanceof MongoBulkWriteException ? ( (MongoBulkWriteException) throwable ).getWriteResult() : null;
+			reports.add( new Report( models.size(), result, throwable ) );
+		}
+
+		// //////////////////////////////////////////////////////////////////////////
+		// Private
+
+		private final Queue<Report> reports = new ConcurrentLinkedQueue<Report>();
+	}
+
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor. Starts the flushing thread.
+	 *
+	 * @param collection
+	 *        The collection (its document class does not matter)
+	 * @param batchSize
+	 *        The maximum number of writes per batch
+	 * @param flushInterval
+	 *        The maximum time in milliseconds that a write waits in the
+	 *        buffer
+	 * @param capacity
+	 *        The maximum number of writes in the buffer
+	 * @param addTimeout
+	 *        How long in milliseconds to wait for room in the buffer, or 0 to
+	 *        wait indefinitely
+	 * @param options
+	 *        The bulk write options
+	 * @param listener
+	 *        The listener or null
+	 * @throws IllegalArgumentException
+	 *         If the batch size, flush interval or capacity are not positive,
+	 *         or the add timeout is negative
+	 */
+	public WriteBehindBuffer( MongoCollection<?> collection, int batchSize, long flushInterval, int capacity, long addTimeout, BulkWriteOptions options, Listener listener )
+	{
+		// Otherwise the flushing thread would never wait
+		if( batchSize <= 0 )
+			throw new IllegalArgumentException( "Batch size must be positive: " + batchSize );
+		if( flushInterval <= 0 )
+			throw new IllegalArgumentException( "Flush interval must be positive: " + flushInterval );
+		if( capacity <= 0 )
+			throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+		if( addTimeout < 0 )
+			throw new IllegalArgumentException( "Add timeout must not be negative: " + addTimeout );
+
+		this.collection = collection.withDocumentClass( RawBsonDocument.class );
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.capacity = capacity;
+		this.addTimeout = addTimeout;
+		this.options = options;
+		this.listener = listener;
+		queue = new ArrayDeque<WriteModel<RawBsonDocument>>( Math.min( capacity, MAX_INITIAL_CAPACITY ) );
+
+		flusher = new Thread( "WriteBehindBuffer: " + collection.getNamespace() )
+		{
+			@Override
+			public void run()
+			{
+				flushPeriodically();
+			}
+		};
+		flusher.setDaemon( true );
+		flusher.start();
+
+		addShutdownHook( this );
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The number of writes waiting in the buffer.
+	 *
+	 * @return The pending count
+	 */
+	public int getPending()
+	{
+		lock.lock();
+		try
+		{
+			return queue.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The number of writes that were written.
+	 *
+	 * @return The written count
+	 */
+	public long getWritten()
+	{
+		return written.get();
+	}
+
+	/**
+	 * The number of writes that were not written because their batch failed.
+	 * For a partially failed batch, only the writes that failed, and for
+	 * ordered batches those after the first failure, are counted.
+	 *
+	 * @return The failed count
+	 */
+	public long getFailed()
+	{
+		return failed.get();
+	}
+
+	/**
+	 * The error of the most recent failed batch.
+	 *
+	 * @return The error or null
+	 */
+	public Throwable getLastError()
+	{
+		return lastError;
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Adds a write, waiting for room in the buffer if it is full.
+	 *
+	 * @param model
+	 *        The write
+	 * @throws InterruptedException
+	 *         If interrupted while waiting
+	 * @throws MongoClientException
+	 *         If the buffer is closed, or if it stayed full for too long
+	 */
+	public void add( WriteModel<RawBsonDocument> model ) throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			long nanos = TimeUnit.MILLISECONDS.toNanos( addTimeout );
+			while( !closed && ( queue.size() >= capacity ) )
+			{
+				if( addTimeout <= 0 )
+					notFull.await();
+				else if( nanos > 0 )
+					nanos = notFull.awaitNanos( nanos );
+				else
+					throw new MongoClientException( "Write-behind buffer is full" );
+			}
+
+			// Checked under the lock, so that nothing is added after the final
+			// flush
+			if( closed )
+				throw new MongoClientException( "Write-behind buffer is closed" );
+
+			queue.add( model );
+			if( queue.size() >= batchSize )
+				batchReady.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds several writes, waiting for room in the buffer if it is full.
+	 *
+	 * @param models
+	 *        The writes
+	 * @throws InterruptedException
+	 *         If interrupted while waiting
+	 * @throws MongoClientException
+	 *         If the buffer is closed, or if it stayed full for too long
+	 */
+	public void addAll( List<WriteModel<RawBsonDocument>> models ) throws InterruptedException
+	{
+		for( WriteModel<RawBsonDocument> model : models )
+			add( model );
+	}
+
+	/**
+	 * Writes all buffered writes on the calling thread.
+	 */
+	public void flush()
+	{
+		synchronized( flushLock )
+		{
+			List<WriteModel<RawBsonDocument>> batch;
+			while( !( batch = takeBatch() ).isEmpty() )
+				write( batch );
+		}
+	}
+
+	/**
+	 * Stops the flushing thread and writes all buffered writes. Further adds,
+	 * as well as adds that are waiting for room in the buffer, will fail.
+	 *
+	 * @throws InterruptedException
+	 *         If interrupted while waiting for the flushing thread
+	 */
+	public void close() throws InterruptedException
+	{
+		lock.lock();
+		try
+		{
+			closed = true;
+			notFull.signalAll();
+			batchReady.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+		if( flusher != Thread.currentThread() )
+			flusher.join();
+		flush();
+		buffers.remove( this );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final int MAX_INITIAL_CAPACITY = 1024;
+
+	private static final Set<WriteBehindBuffer> buffers = Collections.newSetFromMap( new ConcurrentHashMap<WriteBehindBuffer, Boolean>() );
+
+	private static boolean shutdownHook;
+
+	private final MongoCollection<RawBsonDocument> collection;
+
+	private final int batchSize;
+
+	private final long flushInterval;
+
+	private final int capacity;
+
+	private final long addTimeout;
+
+	private final BulkWriteOptions options;
+
+	private final Listener listener;
+
+	/**
+	 * Guarded by the lock.
+	 */
+	private final ArrayDeque<WriteModel<RawBsonDocument>> queue;
+
+	private final Thread flusher;
+
+	/**
+	 * Guards the queue and the closed flag.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notFull = lock.newCondition();
+
+	private final Condition batchReady = lock.newCondition();
+
+	private final Object flushLock = new Object();
+
+	private final AtomicLong written = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private volatile Throwable lastError;
+
+	/**
+	 * Guarded by the lock.
+	 */
+	private boolean closed;
+
+	private static synchronized void addShutdownHook( WriteBehindBuffer buffer )
+	{
+		buffers.add( buffer );
+		if( !shutdownHook )
+		{
+			Runtime.getRuntime().addShutdownHook( new Thread( "WriteBehindBuffer shutdown" )
+			{
+				@Override
+				public void run()
+				{
+					for( WriteBehindBuffer buffer : buffers )
+					{
+						try
+						{
+							buffer.close();
+						}
+						catch( InterruptedException x )
+						{
+							break;
+						}
+					}
+				}
+			} );
+			shutdownHook = true;
+		}
+	}
+
+	private void flushPeriodically()
+	{
+		try
+		{
+			while( awaitBatch() )
+				flush();
+		}
+		catch( InterruptedException x )
+		{
+		}
+	}
+
+	/**
+	 * Waits until there are enough writes for a batch or the flush interval
+	 * passes.
+	 *
+	 * @return False if closed
+	 */
+	private boolean awaitBatch() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			if( !closed && ( queue.size() < batchSize ) )
+				batchReady.await( flushInterval, TimeUnit.MILLISECONDS );
+			return !closed;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private List<WriteModel<RawBsonDocument>> takeBatch()
+	{
+		lock.lock();
+		try
+		{
+			int size = Math.min( queue.size(), batchSize );
+			List<WriteModel<RawBsonDocument>> batch = new ArrayList<WriteModel<RawBsonDocument>>( size );
+			for( int i = 0; i < size; i++ )
+				batch.add( queue.poll() );
+			if( size > 0 )
+				notFull.signalAll();
+			return batch;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void write( List<WriteModel<RawBsonDocument>> batch )
+	{
+		BulkWriteResult result;
+		try
+		{
+			result = collection.bulkWrite( batch, options );
+		}
+		catch( RuntimeException x )
+		{
+			int unwritten = x instanceof MongoBulkWriteException ? getUnwritten( (MongoBulkWriteException) x, batch.size() ) : batch.size();
+			written.addAndGet( batch.size() - unwritten );
+			failed.addAndGet( unwritten );
+			lastError = x;
+			if( listener != null )
+			{
+				try
+				{
+					listener.onError( batch, x );
+				}
+				catch( RuntimeException xx )
+				{
+					// The flushing thread must survive the listener
+				}
+			}
+			return;
+		}
+
+		written.addAndGet( batch.size() );
+		if( listener != null )
+		{
+			try
+			{
+				listener.onFlush( batch.size(), result );
+			}
+			catch( RuntimeException x )
+			{
+				// The flushing thread must survive the listener
+			}
+		}
+	}
+
+	/**
+	 * The number of writes in a batch that were not written. An ordered batch
+	 * stops at its first error. A batch with only a write concern error was
+	 * written.
+	 */
+	private int getUnwritten( MongoBulkWriteException x, int size )
+	{
+		List<BulkWriteError> errors = x.getWriteErrors();
+		if( errors.isEmpty() )
+			return 0;
+		if( options.isOrdered() )
+		{
+			int first = size;
+			for( BulkWriteError error : errors )
+				first = Math.min( first, error.getIndex() );
+			return size - first;
+		}
+		return errors.size();
+	}
+}
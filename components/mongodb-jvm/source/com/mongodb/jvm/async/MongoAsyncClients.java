@@ -0,0 +1,169 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.async;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.SocketFactory;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.bson.RawBsonDocument;
+
+import com.mongodb.MongoClientException;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoNamespace;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoClientSettings;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.connection.ClusterSettings;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.connection.ServerSettings;
+import com.mongodb.connection.SocketSettings;
+import com.mongodb.connection.SslSettings;
+import com.mongodb.connection.StreamFactoryFactory;
+import com.mongodb.selector.LatencyMinimizingServerSelector;
+
+/**
+ * Async driver clients paired with synchronous driver clients, so that both
+ * can be used on the same cluster with the same settings.
+ * <p>
+ * The async client is created on first use with the addresses, credentials
+ * and options of the synchronous client. It has its own connection pool.
+ * <p>
+ * The async driver's default streams do not support SSL, so for SSL
+ * connections Netty must be in the classpath. Netty's streams always use the
+ * default SSL context, so a custom SSL socket factory cannot be carried over.
+ * Custom SSL socket factory classes are rejected, but a factory created from
+ * a custom SSL context looks like the default one, and is silently replaced
+ * by it.
+ *
+ * @author Tal Liron
+ */
+public class MongoAsyncClients
+{
+	//
+	// Static operations
+	//
+
+	/**
+	 * The async client paired with a synchronous client. Created if it does
+	 * not exist.
+	 *
+	 * @param client
+	 *        The synchronous client
+	 * @return The async client
+	 */
+	public static MongoClient get( com.mongodb.MongoClient client )
+	{
+		synchronized( clients )
+		{
+			MongoClient asyncClient = clients.get( client );
+			if( asyncClient == null )
+			{
+				asyncClient = create( client );
+				clients.put( client, asyncClient );
+			}
+			return asyncClient;
+		}
+	}
+
+	/**
+	 * A collection of the async client paired with a synchronous client, for
+	 * {@link RawBsonDocument} documents.
+	 *
+	 * @param client
+	 *        The synchronous client
+	 * @param namespace
+	 *        The collection's namespace
+	 * @return The async collection
+	 */
+	public static MongoCollection<RawBsonDocument> getCollection( com.mongodb.MongoClient client, MongoNamespace namespace )
+	{
+		return get( client ).getDatabase( namespace.getDatabaseName() ).getCollection( namespace.getCollectionName(), RawBsonDocument.class );
+	}
+
+	/**
+	 * Closes the async client paired with a synchronous client, if it exists.
+	 *
+	 * @param client
+	 *        The synchronous client
+	 */
+	public static void close( com.mongodb.MongoClient client )
+	{
+		MongoClient asyncClient;
+		synchronized( clients )
+		{
+			asyncClient = clients.remove( client );
+		}
+		if( asyncClient != null )
+			asyncClient.close();
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final Map<com.mongodb.MongoClient, MongoClient> clients = new IdentityHashMap<com.mongodb.MongoClient, MongoClient>();
+
+	private static MongoClient create( com.mongodb.MongoClient client )
+	{
+		MongoClientOptions options = client.getMongoClientOptions();
+		ClusterSettings clusterSettings = ClusterSettings.builder().hosts( client.getServerAddressList() ).requiredReplicaSetName( options.getRequiredReplicaSetName() )
+			.serverSelectionTimeout( options.getServerSelectionTimeout(), TimeUnit.MILLISECONDS ).serverSelector( new LatencyMinimizingServerSelector( options.getLocalThreshold(), TimeUnit.MILLISECONDS ) )
+			.description( options.getDescription() ).build();
+		ConnectionPoolSettings connectionPoolSettings = ConnectionPoolSettings.builder().minSize( options.getMinConnectionsPerHost() ).maxSize( options.getConnectionsPerHost() )
+			.maxWaitQueueSize( options.getConnectionsPerHost() * options.getThreadsAllowedToBlockForConnectionMultiplier() ).maxWaitTime( options.getMaxWaitTime(), TimeUnit.MILLISECONDS )
+			.maxConnectionIdleTime( options.getMaxConnectionIdleTime(), TimeUnit.MILLISECONDS ).maxConnectionLifeTime( options.getMaxConnectionLifeTime(), TimeUnit.MILLISECONDS ).build();
+		SocketSettings socketSettings = SocketSettings.builder().connectTimeout( options.getConnectTimeout(), TimeUnit.MILLISECONDS ).readTimeout( options.getSocketTimeout(), TimeUnit.MILLISECONDS )
+			.keepAlive( options.isSocketKeepAlive() ).build();
+		SocketSettings heartbeatSocketSettings = SocketSettings.builder().connectTimeout( options.getHeartbeatConnectTimeout(), TimeUnit.MILLISECONDS )
+			.readTimeout( options.getHeartbeatSocketTimeout(), TimeUnit.MILLISECONDS ).keepAlive( options.isSocketKeepAlive() ).build();
+		ServerSettings serverSettings = ServerSettings.builder().heartbeatFrequency( options.getHeartbeatFrequency(), TimeUnit.MILLISECONDS )
+			.minHeartbeatFrequency( options.getMinHeartbeatFrequency(), TimeUnit.MILLISECONDS ).build();
+		SslSettings sslSettings = SslSettings.builder().enabled( options.isSslEnabled() ).invalidHostNameAllowed( options.isSslInvalidHostNameAllowed() ).build();
+
+		MongoClientSettings.Builder settings = MongoClientSettings.builder().clusterSettings( clusterSettings ).connectionPoolSettings( connectionPoolSettings ).socketSettings( socketSettings )
+			.heartbeatSocketSettings( heartbeatSocketSettings ).serverSettings( serverSettings ).sslSettings( sslSettings ).credentialList( client.getCredentialsList() )
+			.readPreference( options.getReadPreference() ).writeConcern( options.getWriteConcern() ).readConcern( options.getReadConcern() );
+		if( options.isSslEnabled() )
+			settings.streamFactoryFactory( createSslStreamFactoryFactory( options.getSocketFactory() ) );
+		return MongoClients.create( settings.build() );
+	}
+
+	private static StreamFactoryFactory createSslStreamFactoryFactory( SocketFactory socketFactory )
+	{
+		// SSLSocketFactory.getDefault() may return a new instance on each call
+		if( ( socketFactory instanceof SSLSocketFactory ) && ( socketFactory.getClass() != SSLSocketFactory.getDefault().getClass() ) )
+			throw new MongoClientException( "The async driver does not support a custom SSL socket factory: its SSL connections always use the default SSL context" );
+
+		// Netty is an optional dependency, so we can't refer to it directly
+		try
+		{
+			Class.forName( "io.netty.channel.EventLoopGroup" );
+			return (StreamFactoryFactory) Class.forName( "com.mongodb.connection.netty.NettyStreamFactoryFactory" ).newInstance();
+		}
+		catch( ClassNotFoundException x )
+		{
+			throw new MongoClientException( "The async driver requires Netty in the classpath for SSL connections", x );
+		}
+		catch( ReflectiveOperationException x )
+		{
+			throw new MongoClientException( "Could not create the async driver's Netty streams", x );
+		}
+	}
+
+	private MongoAsyncClients()
+	{
+	}
+}
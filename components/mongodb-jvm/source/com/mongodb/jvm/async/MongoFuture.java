@@ -0,0 +1,160 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.async;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.bson.RawBsonDocument;
+import org.bson.jvm.Bson;
+
+import com.mongodb.async.SingleResultCallback;
+
+/**
+ * A callback for the MongoDB async driver that can be waited on as a
+ * {@link Future}.
+ * <p>
+ * The driver calls back on its own threads, on which script engines usually
+ * have no context. Operations should thus be given and return engine-independent
+ * documents, such as {@link RawBsonDocument}, which
+ * {@link #getDecoded(long)} then decodes on the waiting thread.
+ *
+ * @author Tal Liron
+ * @param <T>
+ *        The result type
+ */
+public class MongoFuture<T> implements SingleResultCallback<T>, Future<T>
+{
+	//
+	// Operations
+	//
+
+	/**
+	 * Waits for the result and decodes it for the current implementation (see
+	 * {@link Bson#getImplementation()}): a {@link RawBsonDocument} is decoded
+	 * into a document, and a {@link List} into an array with its items
+	 * decoded. Other results are returned as is.
+	 * <p>
+	 * Unlike {@link #get()}, a failure is thrown as is if it is unchecked,
+	 * rather than wrapped in an {@link ExecutionException}.
+	 *
+	 * @param timeout
+	 *        The timeout in milliseconds, or 0 to wait indefinitely
+	 * @return The decoded result
+	 * @throws InterruptedException
+	 *         If interrupted while waiting
+	 * @throws TimeoutException
+	 *         If timed out while waiting
+	 * @throws ExecutionException
+	 *         If the operation failed with a checked exception
+	 */
+	public Object getDecoded( long timeout ) throws InterruptedException, TimeoutException, ExecutionException
+	{
+		if( timeout <= 0 )
+			latch.await();
+		else if( !latch.await( timeout, TimeUnit.MILLISECONDS ) )
+			throw new TimeoutException();
+
+		if( throwable instanceof RuntimeException )
+			throw (RuntimeException) throwable;
+		else if( throwable instanceof Error )
+			throw (Error) throwable;
+		else if( throwable != null )
+			throw new ExecutionException( throwable );
+		return decode( result );
+	}
+
+	//
+	// SingleResultCallback
+	//
+
+	public void onResult( T result, Throwable throwable )
+	{
+		this.result = result;
+		this.throwable = throwable;
+		latch.countDown();
+	}
+
+	//
+	// Future
+	//
+
+	/**
+	 * Operations of the async driver cannot be cancelled, so this does
+	 * nothing.
+	 *
+	 * @return Always false
+	 */
+	public boolean cancel( boolean mayInterruptIfRunning )
+	{
+		return false;
+	}
+
+	public boolean isCancelled()
+	{
+		return false;
+	}
+
+	public boolean isDone()
+	{
+		return latch.getCount() == 0;
+	}
+
+	public T get() throws InterruptedException, ExecutionException
+	{
+		latch.await();
+		return getResult();
+	}
+
+	public T get( long timeout, TimeUnit unit ) throws InterruptedException, ExecutionException, TimeoutException
+	{
+		if( !latch.await( timeout, unit ) )
+			throw new TimeoutException();
+		return getResult();
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final CountDownLatch latch = new CountDownLatch( 1 );
+
+	private T result;
+
+	private Throwable throwable;
+
+	private T getResult() throws ExecutionException
+	{
+		if( throwable != null )
+			throw new ExecutionException( throwable );
+		return result;
+	}
+
+	private static Object decode( Object result )
+	{
+		if( result instanceof RawBsonDocument )
+			return Bson.fromRaw( (RawBsonDocument) result );
+		else if( result instanceof List )
+		{
+			List<?> list = (List<?>) result;
+			Object[] items = new Object[list.size()];
+			int i = 0;
+			for( Object item : list )
+				items[i++] = decode( item );
+			return Bson.getImplementation().createArray( items );
+		}
+		return result;
+	}
+}
@@ -0,0 +1,761 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.json;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.bson.BsonBinary;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonTimestamp;
+import org.bson.BsonWriter;
+import org.bson.json.JsonParseException;
+import org.bson.jvm.internal.Base64;
+import org.bson.types.ObjectId;
+
+/**
+ * Parses extended JSON text directly into a {@link BsonWriter}, in a single
+ * pass and without building an intermediate object graph.
+ * <p>
+ * Recognizes the same forms as the transformers in
+ * {@link com.mongodb.jvm.json.generic}: "$oid", "$date", "$numberLong",
+ * "$binary" and "$timestamp", as well as "$regex", "$undefined", "$minKey",
+ * "$maxKey", "$symbol" and "$code". DBRefs ("$ref" and "$id") are plain
+ * documents in BSON, so they need no special treatment. "$date" may be
+ * milliseconds since the epoch, a nested "$numberLong" or an ISO-8601 string,
+ * like the driver's {@link org.bson.json.JsonReader}.
+ * <p>
+ * Unlike the driver, we are lenient on purpose, because the same text is also
+ * used for queries: a document that only looks like one of these forms, such
+ * as <code>{$oid: '...', y: 1}</code> or <code>{$date: {$gt: 5}}</code>, is
+ * written as a regular document rather than rejected. Also, "$numberLong"
+ * may be a number as well as a string.
+ * <p>
+ * Integers are written as 32-bit integers if they fit, otherwise as 64-bit
+ * integers, like the driver's {@link org.bson.json.JsonReader}. Strings may
+ * be single-quoted and keys may be unquoted.
+ *
+ * @author Tal Liron
+ */
+public class ExtendedJsonParser
+{
+	//
+	// Static operations
+	//
+
+	/**
+	 * Parses a JSON document.
+	 *
+	 * @param json
+	 *        The JSON text
+	 * @param writer
+	 *        The BSON writer
+	 * @throws JsonParseException
+	 *         In case of a parsing error
+	 */
+	public static void parse( CharSequence json, BsonWriter writer )
+	{
+		new ExtendedJsonParser( json, writer ).parseDocument();
+	}
+
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param json
+	 *        The JSON text
+	 * @param writer
+	 *        The BSON writer
+	 */
+	public ExtendedJsonParser( CharSequence json, BsonWriter writer )
+	{
+		this.json = json;
+		this.writer = writer;
+		length = json.length();
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Parses a JSON document, which must be all of the remaining text.
+	 *
+	 * @throws JsonParseException
+	 *         In case of a parsing error
+	 */
+	public void parseDocument()
+	{
+		skipWhitespace();
+		if( peek() != '{' )
+			throw error( "Expected a document" );
+		parseDocument( null, false );
+		skipWhitespace();
+		if( position < length )
+			throw error( "Unexpected character" );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final CharSequence json;
+
+	private final BsonWriter writer;
+
+	private final int length;
+
+	private int position;
+
+	/**
+	 * Reused for strings with escape sequences.
+	 */
+	private final StringBuilder buffer = new StringBuilder();
+
+	private JsonParseException error( String message )
+	{
+		return new JsonParseException( "%s at position %d", message, position );
+	}
+
+	private char peek()
+	{
+		if( position >= length )
+			throw error( "Unexpected end of text" );
+		return json.charAt( position );
+	}
+
+	private void expect( char c )
+	{
+		if( peek() != c )
+			throw error( "Expected '" + c + "'" );
+		position++;
+	}
+
+	private boolean consume( char c )
+	{
+		skipWhitespace();
+		if( ( position < length ) && ( json.charAt( position ) == c ) )
+		{
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void skipWhitespace()
+	{
+		while( position < length )
+		{
+			char c = json.charAt( position );
+			if( ( c != ' ' ) && ( c != '\n' ) && ( c != '\r' ) && ( c != '\t' ) )
+				break;
+			position++;
+		}
+	}
+
+	private void writeName( String name )
+	{
+		if( name != null )
+			writer.writeName( name );
+	}
+
+	private void parseValue( String name )
+	{
+		skipWhitespace();
+		switch( peek() )
+		{
+			case '{':
+				parseDocument( name, true );
+				break;
+
+			case '[':
+				parseArray( name );
+				break;
+
+			case '"':
+			case '\'':
+			{
+				String value = parseString();
+				writeName( name );
+				writer.writeString( value );
+				break;
+			}
+
+			case 't':
+				parseWord( "true" );
+				writeName( name );
+				writer.writeBoolean( true );
+				break;
+
+			case 'f':
+				parseWord( "false" );
+				writeName( name );
+				writer.writeBoolean( false );
+				break;
+
+			case 'n':
+				parseWord( "null" );
+				writeName( name );
+				writer.writeNull();
+				break;
+
+			default:
+			{
+				Number value = parseNumber();
+				writeName( name );
+				if( value instanceof Integer )
+					writer.writeInt32( value.intValue() );
+				else if( value instanceof Long )
+					writer.writeInt64( value.longValue() );
+				else
+					writer.writeDouble( value.doubleValue() );
+			}
+		}
+	}
+
+	/**
+	 * Parses a document.
+	 *
+	 * @param name
+	 *        The element name or null
+	 * @param extended
+	 *        Whether the document may be an extended JSON form, which is
+	 *        written as a value; false for the top-level document
+	 */
+	private void parseDocument( String name, boolean extended )
+	{
+		int start = position;
+		expect( '{' );
+		skipWhitespace();
+		if( extended && ( peek() != '}' ) )
+		{
+			// Extended JSON forms are recognized by their first key
+			String key = parseKey();
+			if( ( key.length() > 1 ) && ( key.charAt( 0 ) == '$' ) && parseExtended( key, name ) )
+				return;
+			position = start + 1;
+		}
+
+		writeName( name );
+		writer.writeStartDocument();
+		if( !consume( '}' ) )
+		{
+			while( true )
+			{
+				skipWhitespace();
+				String key = parseKey();
+				skipWhitespace();
+				expect( ':' );
+				parseValue( key );
+				if( consume( ',' ) )
+					continue;
+				if( consume( '}' ) )
+					break;
+				throw error( "Expected ',' or '}'" );
+			}
+		}
+		writer.writeEndDocument();
+	}
+
+	private void parseArray( String name )
+	{
+		expect( '[' );
+		writeName( name );
+		writer.writeStartArray();
+		if( !consume( ']' ) )
+		{
+			while( true )
+			{
+				parseValue( null );
+				if( consume( ',' ) )
+					continue;
+				if( consume( ']' ) )
+					break;
+				throw error( "Expected ',' or ']'" );
+			}
+		}
+		writer.writeEndArray();
+	}
+
+	/**
+	 * Parses the rest of an extended JSON form, after its first key. Nothing
+	 * is written unless the form is recognized, so that the caller can parse
+	 * the document again as a regular document.
+	 *
+	 * @param key
+	 *        The first key
+	 * @param name
+	 *        The element name or null
+	 * @return True if recognized and written
+	 */
+	private boolean parseExtended( String key, String name )
+	{
+		if( !consume( ':' ) )
+			return false;
+		skipWhitespace();
+		if( position >= length )
+			return false;
+		char c = json.charAt( position );
+		boolean isString = ( c == '"' ) || ( c == '\'' );
+
+		if( "$oid".equals( key ) )
+		{
+			if( !isString )
+				return false;
+			String hex = parseString();
+			if( !ObjectId.isValid( hex ) || !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeObjectId( new ObjectId( hex ) );
+			return true;
+		}
+		else if( "$date".equals( key ) )
+		{
+			Long date;
+			if( c == '{' )
+			{
+				// Nested "$numberLong"
+				position++;
+				skipWhitespace();
+				if( ( peek() != '}' ) && "$numberLong".equals( parseKey() ) && consume( ':' ) )
+					date = parseLong();
+				else
+					date = null;
+				if( ( date == null ) || !consume( '}' ) )
+					return false;
+			}
+			else if( isNumber( c ) )
+				date = parseNumber().longValue();
+			else if( isString )
+			{
+				String iso = parseString();
+				try
+				{
+					date = DatatypeConverter.parseDateTime( iso ).getTimeInMillis();
+				}
+				catch( IllegalArgumentException x )
+				{
+					throw error( "Expected an ISO-8601 date time string" );
+				}
+			}
+			else
+				return false;
+			if( !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeDateTime( date );
+			return true;
+		}
+		else if( "$numberLong".equals( key ) )
+		{
+			Long value = parseLong();
+			if( ( value == null ) || !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeInt64( value );
+			return true;
+		}
+		else if( "$binary".equals( key ) )
+		{
+			if( !isString )
+				return false;
+			byte[] data;
+			int start = skipPlainString();
+			if( start != -1 )
+				// Decode in place, without creating a string
+				data = Base64.decode( json, start, position - 1 );
+			else
+				data = Base64.decode( parseString() );
+			if( data == null )
+				return false;
+			byte type = 0;
+			if( consume( ',' ) )
+			{
+				skipWhitespace();
+				if( !"$type".equals( parseKey() ) || !consume( ':' ) )
+					return false;
+				skipWhitespace();
+				if( !isString( peek() ) )
+					return false;
+				try
+				{
+					type = (byte) Long.parseLong( parseString(), 16 );
+				}
+				catch( NumberFormatException x )
+				{
+					return false;
+				}
+			}
+			if( !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeBinaryData( new BsonBinary( type, data ) );
+			return true;
+		}
+		else if( "$regex".equals( key ) )
+		{
+			if( !isString )
+				return false;
+			String pattern = parseString();
+			String options = "";
+			if( consume( ',' ) )
+			{
+				skipWhitespace();
+				if( !"$options".equals( parseKey() ) || !consume( ':' ) )
+					return false;
+				skipWhitespace();
+				if( !isString( peek() ) )
+					return false;
+				options = parseString();
+			}
+			if( !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeRegularExpression( new BsonRegularExpression( pattern, options ) );
+			return true;
+		}
+		else if( "$timestamp".equals( key ) )
+		{
+			if( c != '{' )
+				return false;
+			position++;
+			Long time = null, inc = null;
+			for( int i = 0; i < 2; i++ )
+			{
+				if( ( i == 1 ) && !consume( ',' ) )
+					return false;
+				skipWhitespace();
+				String part = parseKey();
+				if( !consume( ':' ) )
+					return false;
+				skipWhitespace();
+				if( "t".equals( part ) )
+					time = parseLong();
+				else if( "i".equals( part ) )
+					inc = parseLong();
+			}
+			if( ( time == null ) || ( inc == null ) || !consume( '}' ) || !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeTimestamp( new BsonTimestamp( time.intValue(), inc.intValue() ) );
+			return true;
+		}
+		else if( "$undefined".equals( key ) )
+		{
+			if( !isWord( "true" ) )
+				return false;
+			position += 4;
+			if( !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeUndefined();
+			return true;
+		}
+		else if( "$minKey".equals( key ) || "$maxKey".equals( key ) )
+		{
+			if( !isNumber( c ) || ( parseNumber().intValue() != 1 ) || !consume( '}' ) )
+				return false;
+			writeName( name );
+			if( "$minKey".equals( key ) )
+				writer.writeMinKey();
+			else
+				writer.writeMaxKey();
+			return true;
+		}
+		else if( "$symbol".equals( key ) )
+		{
+			if( !isString )
+				return false;
+			String symbol = parseString();
+			if( !consume( '}' ) )
+				return false;
+			writeName( name );
+			writer.writeSymbol( symbol );
+			return true;
+		}
+		else if( "$code".equals( key ) )
+		{
+			if( !isString )
+				return false;
+			String code = parseString();
+			if( consume( '}' ) )
+			{
+				writeName( name );
+				writer.writeJavaScript( code );
+				return true;
+			}
+			if( !consume( ',' ) )
+				return false;
+			skipWhitespace();
+			if( !"$scope".equals( parseKey() ) || !consume( ':' ) )
+				return false;
+			skipWhitespace();
+			if( peek() != '{' )
+				return false;
+
+			// From here on the form is certain
+			writeName( name );
+			writer.writeJavaScriptWithScope( code );
+			parseDocument( null, false );
+			if( !consume( '}' ) )
+				throw error( "Expected '}'" );
+			return true;
+		}
+
+		return false;
+	}
+
+	private String parseKey()
+	{
+		char c = peek();
+		if( isString( c ) )
+			return parseString();
+
+		// Unquoted
+		int start = position;
+		while( position < length )
+		{
+			c = json.charAt( position );
+			if( !Character.isLetterOrDigit( c ) && ( c != '$' ) && ( c != '_' ) )
+				break;
+			position++;
+		}
+		if( position == start )
+			throw error( "Expected a key" );
+		return json.subSequence( start, position ).toString();
+	}
+
+	private String parseString()
+	{
+		char quote = json.charAt( position++ );
+		int start = position;
+
+		// Fast path: no escape sequences
+		while( true )
+		{
+			char c = peek();
+			if( c == quote )
+			{
+				String string = json.subSequence( start, position ).toString();
+				position++;
+				return string;
+			}
+			if( c == '\\' )
+				break;
+			position++;
+		}
+
+		buffer.setLength( 0 );
+		buffer.append( json, start, position );
+		while( true )
+		{
+			char c = peek();
+			position++;
+			if( c == quote )
+				return buffer.toString();
+			if( c != '\\' )
+			{
+				buffer.append( c );
+				continue;
+			}
+			c = peek();
+			position++;
+			switch( c )
+			{
+				case 'b':
+					buffer.append( '\b' );
+					break;
+				case 'f':
+					buffer.append( '\f' );
+					break;
+				case 'n':
+					buffer.append( '\n' );
+					break;
+				case 'r':
+					buffer.append( '\r' );
+					break;
+				case 't':
+					buffer.append( '\t' );
+					break;
+				case 'u':
+					if( position + 4 > length )
+						throw error( "Invalid unicode escape sequence" );
+					try
+					{
+						buffer.append( (char) Integer.parseInt( json.subSequence( position, position + 4 ).toString(), 16 ) );
+					}
+					catch( NumberFormatException x )
+					{
+						throw error( "Invalid unicode escape sequence" );
+					}
+					position += 4;
+					break;
+				default:
+					// Includes quotes, '\\' and '/'
+					buffer.append( c );
+			}
+		}
+	}
+
+	private boolean isWord( String word )
+	{
+		int wordLength = word.length();
+		if( position + wordLength > length )
+			return false;
+		for( int i = 0; i < wordLength; i++ )
+			if( json.charAt( position + i ) != word.charAt( i ) )
+				return false;
+		return true;
+	}
+
+	/**
+	 * Skips a string if it has no escape sequences.
+	 *
+	 * @return The start of the string's contents or -1 if not skipped
+	 */
+	private int skipPlainString()
+	{
+		char quote = json.charAt( position );
+		int start = position + 1;
+		for( int i = start; i < length; i++ )
+		{
+			char c = json.charAt( i );
+			if( c == quote )
+			{
+				position = i + 1;
+				return start;
+			}
+			if( c == '\\' )
+				break;
+		}
+		return -1;
+	}
+
+	private void parseWord( String word )
+	{
+		if( !isWord( word ) )
+			throw error( "Unexpected character" );
+		position += word.length();
+	}
+
+	/**
+	 * Parses a number.
+	 *
+	 * @return An {@link Integer}, a {@link Long} or a {@link Double}
+	 */
+	private Number parseNumber()
+	{
+		int start = position;
+		boolean negative = false;
+		char c = peek();
+		if( c == '-' )
+		{
+			negative = true;
+			position++;
+		}
+
+		// Accumulate the integer part while it fits
+		long value = 0;
+		int digits = 0;
+		while( position < length )
+		{
+			c = json.charAt( position );
+			if( ( c < '0' ) || ( c > '9' ) )
+				break;
+			value = value * 10 + ( c - '0' );
+			digits++;
+			position++;
+		}
+		if( digits == 0 )
+			throw error( "Unexpected character" );
+
+		boolean isFloatingPoint = false;
+		while( position < length )
+		{
+			c = json.charAt( position );
+			if( ( c == '.' ) || ( c == 'e' ) || ( c == 'E' ) )
+				isFloatingPoint = true;
+			else if( !( ( c >= '0' ) && ( c <= '9' ) ) && !( ( ( c == '-' ) || ( c == '+' ) ) && isFloatingPoint ) )
+				break;
+			position++;
+		}
+
+		String string = null;
+		try
+		{
+			if( isFloatingPoint )
+				return Double.valueOf( json.subSequence( start, position ).toString() );
+
+			if( digits > 18 )
+			{
+				// Might not fit in a long
+				string = json.subSequence( start, position ).toString();
+				value = Long.parseLong( string );
+			}
+			else if( negative )
+				value = -value;
+
+			if( ( value >= Integer.MIN_VALUE ) && ( value <= Integer.MAX_VALUE ) )
+				return (int) value;
+			return value;
+		}
+		catch( NumberFormatException x )
+		{
+			if( string != null )
+				return Double.valueOf( string );
+			throw error( "Invalid number" );
+		}
+	}
+
+	/**
+	 * Parses an integer, either as a number or as a string.
+	 *
+	 * @return The integer or null if not an integer
+	 */
+	private Long parseLong()
+	{
+		skipWhitespace();
+		if( position >= length )
+			return null;
+		char c = json.charAt( position );
+		if( isString( c ) )
+		{
+			try
+			{
+				return Long.valueOf( parseString() );
+			}
+			catch( NumberFormatException x )
+			{
+				return null;
+			}
+		}
+		else if( isNumber( c ) )
+		{
+			Number number = parseNumber();
+			if( number instanceof Double )
+				return null;
+			return number.longValue();
+		}
+		return null;
+	}
+
+	private static boolean isString( char c )
+	{
+		return ( c == '"' ) || ( c == '\'' );
+	}
+
+	private static boolean isNumber( char c )
+	{
+		return ( ( c >= '0' ) && ( c <= '9' ) ) || ( c == '-' );
+	}
+}
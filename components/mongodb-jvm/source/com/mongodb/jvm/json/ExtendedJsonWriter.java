@@ -0,0 +1,661 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.json;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.bson.AbstractBsonWriter;
+import org.bson.BSONException;
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonContextType;
+import org.bson.BsonDbPointer;
+import org.bson.BsonReader;
+import org.bson.BsonRegularExpression;
+import org.bson.BsonTimestamp;
+import org.bson.BsonWriterSettings;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.io.ByteBufferBsonInput;
+import org.bson.jvm.Bson;
+import org.bson.jvm.internal.Base64;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.types.ObjectId;
+
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoIterable;
+import com.threecrickets.jvm.json.util.JsonUtil;
+
+/**
+ * A BSON writer that writes extended JSON text directly to a {@link Writer},
+ * using the same conventions as the encoders in
+ * {@link com.mongodb.jvm.json.generic}: "$oid", "$date", "$binary", etc.
+ * <p>
+ * Documents are written as they are encoded or piped from a {@link BsonReader}
+ * , so that no intermediate objects or strings are created. Use
+ * {@link #write(MongoIterable, Writer)} to stream an entire result set as a
+ * JSON array in constant memory. Note that documents of a lazy document class
+ * (see {@link Bson#getLazyDocumentClass()}) and {@link org.bson.RawBsonDocument}
+ * are piped as is, without being decoded into JavaScript objects at all.
+ *
+ * @author Tal Liron
+ */
+public class ExtendedJsonWriter extends AbstractBsonWriter
+{
+	//
+	// Static operations
+	//
+
+	/**
+	 * Writes all documents of an iterable as a JSON array. The cursor is
+	 * closed when done.
+	 * <p>
+	 * For the documents to be piped as is, without being decoded, the
+	 * iterable should have {@link org.bson.RawBsonDocument} as its document
+	 * class (see {@link Bson#getRawDocumentClass()}).
+	 *
+	 * @param iterable
+	 *        The iterable, for example a {@link com.mongodb.client.FindIterable}
+	 * @param out
+	 *        The writer
+	 * @throws IOException
+	 *         In case of a writing error
+	 */
+	public static void write( MongoIterable<?> iterable, Writer out ) throws IOException
+	{
+		CodecCache codecCache = Bson.getCodecCache();
+		EncoderContext encoderContext = EncoderContext.builder().build();
+		ExtendedJsonWriter writer = new ExtendedJsonWriter( out );
+		MongoCursor<?> cursor = iterable.iterator();
+		try
+		{
+			out.write( '[' );
+			boolean first = true;
+			while( cursor.hasNext() )
+			{
+				Object document = cursor.next();
+				if( first )
+					first = false;
+				else
+					out.write( ',' );
+				if( document instanceof RawBsonDocument )
+					writer.writeDocument( new BsonBinaryReader( new ByteBufferBsonInput( ( (RawBsonDocument) document ).getByteBuffer() ) ) );
+				else
+					writer.writeDocument( document, codecCache, encoderContext );
+			}
+			out.write( ']' );
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Writes all documents of an iterable as a JSON array in UTF-8. The cursor
+	 * is closed and the stream is flushed when done.
+	 *
+	 * @param iterable
+	 *        The iterable, for example a {@link com.mongodb.client.FindIterable}
+	 * @param out
+	 *        The stream
+	 * @throws IOException
+	 *         In case of a writing error
+	 */
+	public static void write( MongoIterable<?> iterable, OutputStream out ) throws IOException
+	{
+		Writer writer = new BufferedWriter( new OutputStreamWriter( out, UTF8 ) );
+		write( iterable, writer );
+		writer.flush();
+	}
+
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param out
+	 *        The writer
+	 */
+	public ExtendedJsonWriter( Writer out )
+	{
+		super( new BsonWriterSettings() );
+		this.out = out;
+		setContext( new Context( null, BsonContextType.TOP_LEVEL ) );
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Writes a document, using the codec registered for its class.
+	 *
+	 * @param document
+	 *        The document
+	 * @param codecCache
+	 *        The codec cache
+	 * @param encoderContext
+	 *        The encoder context
+	 */
+	public void writeDocument( Object document, CodecCache codecCache, EncoderContext encoderContext )
+	{
+		Codec<Object> codec = codecCache.get( document.getClass() );
+		if( codec == null )
+			throw new CodecConfigurationException( "Can't find a codec for " + document.getClass() );
+		codec.encode( this, document, encoderContext );
+	}
+
+	/**
+	 * Writes the current document of a BSON reader.
+	 *
+	 * @param reader
+	 *        The BSON reader
+	 */
+	public void writeDocument( BsonReader reader )
+	{
+		pipe( reader );
+	}
+
+	//
+	// BsonWriter
+	//
+
+	public void flush()
+	{
+		try
+		{
+			out.flush();
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Protected
+
+	//
+	// AbstractBsonWriter
+	//
+
+	@Override
+	protected Context getContext()
+	{
+		return (Context) super.getContext();
+	}
+
+	@Override
+	protected void doWriteStartDocument()
+	{
+		try
+		{
+			BsonContextType contextType;
+			if( getState() == State.SCOPE_DOCUMENT )
+				// The name was written by doWriteJavaScriptWithScope
+				contextType = BsonContextType.SCOPE_DOCUMENT;
+			else
+			{
+				writeName();
+				contextType = BsonContextType.DOCUMENT;
+			}
+			out.write( '{' );
+			setContext( new Context( getContext(), contextType ) );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteEndDocument()
+	{
+		try
+		{
+			out.write( '}' );
+			if( getContext().getContextType() == BsonContextType.SCOPE_DOCUMENT )
+				// Close the "$code" document
+				out.write( '}' );
+			setContext( getContext().getParentContext() );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteStartArray()
+	{
+		try
+		{
+			writeName();
+			out.write( '[' );
+			setContext( new Context( getContext(), BsonContextType.ARRAY ) );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteEndArray()
+	{
+		try
+		{
+			out.write( ']' );
+			setContext( getContext().getParentContext() );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteBinaryData( BsonBinary value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$binary\":\"" );
+			Base64.encode( value.getData(), out );
+			out.write( "\",\"$type\":\"" );
+			int type = value.getType() & 0xff;
+			out.write( HEX[type >> 4] );
+			out.write( HEX[type & 0xf] );
+			out.write( "\"}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteBoolean( boolean value )
+	{
+		try
+		{
+			writeName();
+			out.write( value ? "true" : "false" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteDateTime( long value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$date\":" );
+			out.write( Long.toString( value ) );
+			out.write( '}' );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteDBPointer( BsonDbPointer value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$ref\":" );
+			writeQuoted( value.getNamespace() );
+			out.write( ",\"$id\":{\"$oid\":\"" );
+			out.write( value.getId().toHexString() );
+			out.write( "\"}}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteDouble( double value )
+	{
+		try
+		{
+			writeName();
+			out.write( JsonUtil.numberToString( value ) );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteInt32( int value )
+	{
+		try
+		{
+			writeName();
+			out.write( Integer.toString( value ) );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteInt64( long value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$numberLong\":\"" );
+			out.write( Long.toString( value ) );
+			out.write( "\"}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteJavaScript( String value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$code\":" );
+			writeQuoted( value );
+			out.write( '}' );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteJavaScriptWithScope( String value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$code\":" );
+			writeQuoted( value );
+			out.write( ",\"$scope\":" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteMaxKey()
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$maxKey\":1}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteMinKey()
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$minKey\":1}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteNull()
+	{
+		try
+		{
+			writeName();
+			out.write( "null" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteObjectId( ObjectId value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$oid\":\"" );
+			out.write( value.toHexString() );
+			out.write( "\"}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteRegularExpression( BsonRegularExpression value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$regex\":" );
+			writeQuoted( value.getPattern() );
+			out.write( ",\"$options\":" );
+			writeQuoted( value.getOptions() );
+			out.write( '}' );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteString( String value )
+	{
+		try
+		{
+			writeName();
+			writeQuoted( value );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteSymbol( String value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$symbol\":" );
+			writeQuoted( value );
+			out.write( '}' );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteTimestamp( BsonTimestamp value )
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$timestamp\":{\"t\":" );
+			out.write( Integer.toString( value.getTime() ) );
+			out.write( ",\"i\":" );
+			out.write( Integer.toString( value.getInc() ) );
+			out.write( "}}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	@Override
+	protected void doWriteUndefined()
+	{
+		try
+		{
+			writeName();
+			out.write( "{\"$undefined\":true}" );
+		}
+		catch( IOException x )
+		{
+			throw new BSONException( "Wrapping IOException", x );
+		}
+	}
+
+	/**
+	 * Writing context.
+	 */
+	protected class Context extends AbstractBsonWriter.Context
+	{
+		public Context( Context parentContext, BsonContextType contextType )
+		{
+			super( parentContext, contextType );
+		}
+
+		@Override
+		public Context getParentContext()
+		{
+			return (Context) super.getParentContext();
+		}
+
+		private boolean hasElements;
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	private static final char[] HEX =
+	{
+		'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+	};
+
+	private final Writer out;
+
+	/**
+	 * Writes the separator and, in documents, the element name.
+	 *
+	 * @throws IOException
+	 *         In case of a writing error
+	 */
+	private void writeName() throws IOException
+	{
+		Context context = getContext();
+		BsonContextType contextType = context.getContextType();
+		if( contextType == BsonContextType.TOP_LEVEL )
+			return;
+		if( context.hasElements )
+			out.write( ',' );
+		else
+			context.hasElements = true;
+		if( contextType != BsonContextType.ARRAY )
+		{
+			writeQuoted( getName() );
+			out.write( ':' );
+		}
+	}
+
+	private void writeQuoted( String value ) throws IOException
+	{
+		out.write( '"' );
+		int length = value.length();
+		int start = 0;
+		for( int i = 0; i < length; i++ )
+		{
+			char c = value.charAt( i );
+			if( ( c >= 0x20 ) && ( c != '"' ) && ( c != '\\' ) )
+				continue;
+
+			// Write the run of characters that need no escaping
+			if( i > start )
+				out.write( value, start, i - start );
+			start = i + 1;
+
+			switch( c )
+			{
+				case '"':
+					out.write( "\\\"" );
+					break;
+				case '\\':
+					out.write( "\\\\" );
+					break;
+				case '\b':
+					out.write( "\\b" );
+					break;
+				case '\f':
+					out.write( "\\f" );
+					break;
+				case '\n':
+					out.write( "\\n" );
+					break;
+				case '\r':
+					out.write( "\\r" );
+					break;
+				case '\t':
+					out.write( "\\t" );
+					break;
+				default:
+					out.write( "\\u00" );
+					out.write( HEX[c >> 4] );
+					out.write( HEX[c & 0xf] );
+			}
+		}
+		if( length > start )
+			out.write( value, start, length - start );
+		out.write( '"' );
+	}
+}
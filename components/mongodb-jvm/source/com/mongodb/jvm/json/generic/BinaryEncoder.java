@@ -12,21 +12,18 @@
 package com.mongodb.jvm.json.generic;
 
 import java.io.IOException;
-import java.util.LinkedHashMap;
 
 import org.bson.jvm.internal.Base64;
 import org.bson.types.Binary;
 
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
-import com.threecrickets.jvm.json.generic.MapEncoder;
 
 /**
  * A JSON encoder for a BSON {@link Binary}.
  * 
  * @author Tal Liron
  */
-public class BinaryEncoder implements JsonEncoder
+public class BinaryEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
@@ -41,9 +38,14 @@ public class BinaryEncoder implements JsonEncoder
 	{
 		Binary binary = (Binary) object;
 
-		LinkedHashMap<String, Object> map = new LinkedHashMap<String, Object>();
-		map.put( "$binary", Base64.encodeToString( binary.getData(), false ) );
-		map.put( "$type", Integer.toHexString( binary.getType() ) );
-		new MapEncoder().encode( map, context );
+		// Written directly, so that the Base64 text never exists in full
+		Appendable out = context.out;
+		out.append( "{\"$binary\":\"" );
+		Base64.encode( binary.getData(), out );
+		out.append( "\",\"$type\":\"" );
+		int type = binary.getType() & 0xff;
+		out.append( Character.forDigit( type >> 4, 16 ) );
+		out.append( Character.forDigit( type & 0xf, 16 ) );
+		out.append( "\"}" );
 	}
 }
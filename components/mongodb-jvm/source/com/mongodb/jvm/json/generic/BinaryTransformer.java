@@ -41,8 +41,8 @@ public class BinaryTransformer implements JsonTransformer
 			if( binary != null )
 			{
 				Object type = map.get( "$type" );
-				byte typeNumber = type != null ? Byte.valueOf( type.toString(), 16 ) : 0;
-				byte[] data = Base64.decodeFast( binary.toString() );
+				byte typeNumber = type != null ? (byte) Integer.parseInt( type.toString(), 16 ) : 0;
+				byte[] data = Base64.decodeFast( binary instanceof CharSequence ? (CharSequence) binary : binary.toString() );
 				return new Binary( typeNumber, data );
 			}
 		}
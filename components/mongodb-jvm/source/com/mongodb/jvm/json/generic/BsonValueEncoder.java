@@ -23,7 +23,6 @@ import org.bson.json.JsonWriter;
 import org.bson.jvm.Bson;
 
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 
 /**
  * A JSON encoder for any {@link BsonValue} that is not a map or a list.
@@ -31,7 +30,7 @@ import com.threecrickets.jvm.json.JsonEncoder;
  * 
  * @author Tal Liron
  */
-public class BsonValueEncoder implements JsonEncoder
+public class BsonValueEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
@@ -0,0 +1,26 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.json.generic;
+
+import com.threecrickets.jvm.json.JsonEncoder;
+
+/**
+ * A JSON encoder whose
+ * {@link #canEncode(Object, com.threecrickets.jvm.json.JsonContext)} depends
+ * on the object's class alone, allowing {@link DispatchEncoder} to cache its
+ * answer per class.
+ *
+ * @author Tal Liron
+ */
+public interface ClassJsonEncoder extends JsonEncoder
+{
+}
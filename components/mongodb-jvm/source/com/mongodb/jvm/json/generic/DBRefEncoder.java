@@ -16,7 +16,6 @@ import java.util.LinkedHashMap;
 
 import com.mongodb.DBRef;
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 
 /**
@@ -24,7 +23,7 @@ import com.threecrickets.jvm.json.generic.MapEncoder;
  * 
  * @author Tal Liron
  */
-public class DBRefEncoder implements JsonEncoder
+public class DBRefEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
@@ -16,7 +16,6 @@ import java.util.Date;
 import java.util.HashMap;
 
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 
 /**
@@ -24,7 +23,7 @@ import com.threecrickets.jvm.json.generic.MapEncoder;
  * 
  * @author Tal Liron
  */
-public class DateEncoder implements JsonEncoder
+public class DateEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
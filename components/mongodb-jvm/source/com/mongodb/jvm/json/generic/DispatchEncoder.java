@@ -0,0 +1,121 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.json.generic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.threecrickets.jvm.json.JsonContext;
+import com.threecrickets.jvm.json.JsonEncoder;
+
+/**
+ * Dispatches to the first of an ordered list of encoders that can encode an
+ * object, caching per class which encoders need to be tried at all. After the
+ * first object of a class, encoders that are known not to match are skipped
+ * instead of trying every encoder in turn.
+ * <p>
+ * Only {@link ClassJsonEncoder} answers are cached, because they depend on the
+ * object's class alone. Other encoders, such as the ones from the json-jvm
+ * library, are always asked again, in their original order, so the result is
+ * the same as without caching. Null is never cached.
+ *
+ * @author Tal Liron
+ */
+public class DispatchEncoder implements JsonEncoder
+{
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param encoders
+	 *        The encoders, in order of precedence
+	 */
+	public DispatchEncoder( Collection<JsonEncoder> encoders )
+	{
+		this.encoders = encoders.toArray( new JsonEncoder[encoders.size()] );
+	}
+
+	//
+	// JsonEncoder
+	//
+
+	public boolean canEncode( Object object, JsonContext context )
+	{
+		return getEncoder( object, context ) != null;
+	}
+
+	public void encode( Object object, JsonContext context ) throws IOException
+	{
+		getEncoder( object, context ).encode( object, context );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final JsonEncoder[] encoders;
+
+	private final ConcurrentMap<Class<?>, JsonEncoder[]> candidatesByClass = new ConcurrentHashMap<Class<?>, JsonEncoder[]>();
+
+	private JsonEncoder getEncoder( Object object, JsonContext context )
+	{
+		if( object == null )
+			return findEncoder( encoders, null, context );
+
+		Class<?> clazz = object.getClass();
+		JsonEncoder[] candidates = candidatesByClass.get( clazz );
+		if( candidates == null )
+		{
+			candidates = findCandidates( object, context );
+			candidatesByClass.put( clazz, candidates );
+		}
+		return findEncoder( candidates, object, context );
+	}
+
+	/**
+	 * The encoders that might encode objects of this object's class: all
+	 * encoders that are not {@link ClassJsonEncoder}, up to and including the
+	 * first {@link ClassJsonEncoder} that matches.
+	 */
+	private JsonEncoder[] findCandidates( Object object, JsonContext context )
+	{
+		ArrayList<JsonEncoder> candidates = new ArrayList<JsonEncoder>();
+		for( JsonEncoder encoder : encoders )
+		{
+			if( encoder instanceof ClassJsonEncoder )
+			{
+				if( encoder.canEncode( object, context ) )
+				{
+					candidates.add( encoder );
+					break;
+				}
+			}
+			else
+				candidates.add( encoder );
+		}
+		return candidates.toArray( new JsonEncoder[candidates.size()] );
+	}
+
+	private static JsonEncoder findEncoder( JsonEncoder[] encoders, Object object, JsonContext context )
+	{
+		// A ClassJsonEncoder among the candidates is already known to match
+		for( JsonEncoder encoder : encoders )
+			if( ( ( object != null ) && ( encoder instanceof ClassJsonEncoder ) ) || encoder.canEncode( object, context ) )
+				return encoder;
+		return null;
+	}
+}
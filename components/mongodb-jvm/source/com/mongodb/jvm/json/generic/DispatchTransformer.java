@@ -0,0 +1,121 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.json.generic;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.threecrickets.jvm.json.JsonImplementation;
+import com.threecrickets.jvm.json.JsonTransformer;
+
+/**
+ * Dispatches a JVM {@link Map} to the transformers registered for its keys,
+ * instead of trying every transformer in turn. Keys are examined in iteration
+ * order, so the order of keys in the map does not matter: keys that are not
+ * "$"-prefixed or have no registered transformers are skipped, and the first
+ * transformed result is returned.
+ * <p>
+ * Transformers registered for the same key are tried in the order in which
+ * they were added. Registration is not thread-safe, and should be done before
+ * use.
+ *
+ * @author Tal Liron
+ */
+public class DispatchTransformer implements JsonTransformer
+{
+	//
+	// Operations
+	//
+
+	/**
+	 * Registers a transformer.
+	 *
+	 * @param key
+	 *        The key, which must start with "$"
+	 * @param transformer
+	 *        The transformer
+	 */
+	public void add( String key, JsonTransformer transformer )
+	{
+		JsonTransformer[] existing = transformers.get( key );
+		if( existing == null )
+			transformers.put( key, new JsonTransformer[]
+			{
+				transformer
+			} );
+		else
+		{
+			existing = Arrays.copyOf( existing, existing.length + 1 );
+			existing[existing.length - 1] = transformer;
+			transformers.put( key, existing );
+		}
+	}
+
+	//
+	// JsonTransformer
+	//
+
+	public Object transform( Object object, JsonImplementation implementation )
+	{
+		if( object instanceof Map )
+		{
+			for( Object key : ( (Map<?, ?>) object ).keySet() )
+			{
+				Object r = transform( key, object, implementation );
+				if( r != null )
+					return r;
+			}
+		}
+
+		return null;
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Protected
+
+	/**
+	 * Calls the transformers registered for a key, if it is "$"-prefixed.
+	 * Subclasses call this for each of an object's keys.
+	 *
+	 * @param key
+	 *        The key
+	 * @param object
+	 *        The object
+	 * @param implementation
+	 *        The JSON implementation
+	 * @return The transformed object or null if not transformed
+	 */
+	protected Object transform( Object key, Object object, JsonImplementation implementation )
+	{
+		if( !( key instanceof String ) || !( (String) key ).startsWith( "$" ) )
+			return null;
+
+		JsonTransformer[] transformers = this.transformers.get( key );
+		if( transformers != null )
+		{
+			for( JsonTransformer transformer : transformers )
+			{
+				Object r = transformer.transform( object, implementation );
+				if( r != null )
+					return r;
+			}
+		}
+
+		return null;
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final Map<String, JsonTransformer[]> transformers = new HashMap<String, JsonTransformer[]>();
+}
@@ -11,6 +11,7 @@
 
 package com.mongodb.jvm.json.generic;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 import com.threecrickets.jvm.json.JsonEncoder;
@@ -54,15 +55,35 @@ public class GenericExtendedJsonImplementation extends GenericJsonImplementation
 		transformers.add( new ObjectIdTransformer() );
 	}
 
+	/**
+	 * Registers our extended JSON transformers by key.
+	 * 
+	 * @param dispatch
+	 *        The dispatch transformer
+	 */
+	public static void addTransformers( DispatchTransformer dispatch )
+	{
+		dispatch.add( "$binary", new BinaryTransformer() );
+		dispatch.add( "$timestamp", new BsonTimestampTransformer() );
+		dispatch.add( "$date", new DateTransformer() );
+		dispatch.add( "$ref", new DBRefTransformer() );
+		dispatch.add( "$numberLong", new LongTransformer() );
+		dispatch.add( "$oid", new ObjectIdTransformer() );
+	}
+
 	//
 	// Construction
 	//
 
 	public GenericExtendedJsonImplementation()
 	{
+		ArrayList<JsonEncoder> encoders = new ArrayList<JsonEncoder>();
 		addEncoders( encoders );
 		GenericJsonImplementation.addEncoders( encoders );
-		addTransformers( transformers );
+		this.encoders.add( new DispatchEncoder( encoders ) );
+		DispatchTransformer dispatch = new DispatchTransformer();
+		addTransformers( dispatch );
+		transformers.add( dispatch );
 	}
 
 	//
@@ -15,7 +15,6 @@ import java.io.IOException;
 import java.util.HashMap;
 
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 import com.threecrickets.jvm.json.util.JsonUtil;
 
@@ -24,7 +23,7 @@ import com.threecrickets.jvm.json.util.JsonUtil;
  * 
  * @author Tal Liron
  */
-public class LongEncoder implements JsonEncoder
+public class LongEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
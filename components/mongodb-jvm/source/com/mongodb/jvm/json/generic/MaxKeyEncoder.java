@@ -17,7 +17,6 @@ import java.util.HashMap;
 import org.bson.types.MaxKey;
 
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 
 /**
@@ -25,7 +24,7 @@ import com.threecrickets.jvm.json.generic.MapEncoder;
  * 
  * @author Tal Liron
  */
-public class MaxKeyEncoder implements JsonEncoder
+public class MaxKeyEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
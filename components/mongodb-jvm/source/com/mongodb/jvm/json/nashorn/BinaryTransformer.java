@@ -42,8 +42,8 @@ public class BinaryTransformer implements JsonTransformer
 			if( ( binary != null ) && ( binary.getClass() != Undefined.class ) )
 			{
 				Object type = scriptObject.get( "$type" );
-				byte typeNumber = ( ( type != null ) && ( type.getClass() != Undefined.class ) ) ? Byte.valueOf( type.toString(), 16 ) : 0;
-				byte[] data = Base64.decodeFast( binary.toString() );
+				byte typeNumber = ( ( type != null ) && ( type.getClass() != Undefined.class ) ) ? (byte) Integer.parseInt( type.toString(), 16 ) : 0;
+				byte[] data = Base64.decodeFast( binary instanceof CharSequence ? (CharSequence) binary : binary.toString() );
 				return new Binary( typeNumber, data );
 			}
 		}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package com.mongodb.jvm.json.nashorn;
+
+import com.threecrickets.jvm.json.JsonImplementation;
+
+import jdk.nashorn.internal.runtime.ScriptObject;
+
+/**
+ * Dispatches a Nashorn {@link ScriptObject} to the transformers registered for
+ * its "$"-prefixed keys, whatever their order. Also supports JVM maps.
+ *
+ * @author Tal Liron
+ */
+public class DispatchTransformer extends com.mongodb.jvm.json.generic.DispatchTransformer
+{
+	//
+	// JsonTransformer
+	//
+
+	@Override
+	public Object transform( Object object, JsonImplementation implementation )
+	{
+		if( object instanceof ScriptObject )
+		{
+			for( String key : ( (ScriptObject) object ).getOwnKeys( false ) )
+			{
+				Object r = transform( key, object, implementation );
+				if( r != null )
+					return r;
+			}
+			return null;
+		}
+
+		return super.transform( object, implementation );
+	}
+}
@@ -14,8 +14,8 @@ package com.mongodb.jvm.json.nashorn;
 import java.io.IOException;
 import java.util.HashMap;
 
+import com.mongodb.jvm.json.generic.ClassJsonEncoder;
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 
 import jdk.nashorn.internal.objects.NativeDate;
@@ -25,7 +25,7 @@ import jdk.nashorn.internal.objects.NativeDate;
  * 
  * @author Tal Liron
  */
-public class NativeDateEncoder implements JsonEncoder
+public class NativeDateEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
@@ -14,8 +14,8 @@ package com.mongodb.jvm.json.nashorn;
 import java.io.IOException;
 import java.util.LinkedHashMap;
 
+import com.mongodb.jvm.json.generic.ClassJsonEncoder;
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 
 import jdk.nashorn.internal.objects.NativeBoolean;
@@ -26,7 +26,7 @@ import jdk.nashorn.internal.objects.NativeRegExp;
  * 
  * @author Tal Liron
  */
-public class NativeRegExpEncoder implements JsonEncoder
+public class NativeRegExpEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
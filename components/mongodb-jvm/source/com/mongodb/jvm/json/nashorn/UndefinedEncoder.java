@@ -14,8 +14,8 @@ package com.mongodb.jvm.json.nashorn;
 import java.io.IOException;
 import java.util.HashMap;
 
+import com.mongodb.jvm.json.generic.ClassJsonEncoder;
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 
 import jdk.nashorn.internal.runtime.Undefined;
@@ -25,7 +25,7 @@ import jdk.nashorn.internal.runtime.Undefined;
  * 
  * @author Tal Liron
  */
-public class UndefinedEncoder implements JsonEncoder
+public class UndefinedEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
@@ -41,8 +41,8 @@ public class BinaryTransformer implements JsonTransformer
 			if( ( binary != null ) && ( binary.getClass() != UniqueTag.class ) )
 			{
 				Object type = scriptable.get( "$type", scriptable );
-				byte typeNumber = ( ( type != null ) && ( type.getClass() != UniqueTag.class ) ) ? Byte.valueOf( type.toString(), 16 ) : 0;
-				byte[] data = Base64.decodeFast( binary.toString() );
+				byte typeNumber = ( ( type != null ) && ( type.getClass() != UniqueTag.class ) ) ? (byte) Integer.parseInt( type.toString(), 16 ) : 0;
+				byte[] data = Base64.decodeFast( binary instanceof CharSequence ? (CharSequence) binary : binary.toString() );
 				return new Binary( typeNumber, data );
 			}
 		}
@@ -11,8 +11,10 @@
 
 package com.mongodb.jvm.json.rhino;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
+import com.mongodb.jvm.json.generic.DispatchEncoder;
 import com.mongodb.jvm.json.generic.GenericExtendedJsonImplementation;
 import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.JsonTransformer;
@@ -52,19 +54,46 @@ public class RhinoExtendedJsonImplementation extends RhinoJsonImplementation
 		transformers.add( new ObjectIdTransformer() );
 	}
 
+	/**
+	 * Registers our extended JSON transformers by key.
+	 * 
+	 * @param dispatch
+	 *        The dispatch transformer
+	 */
+	public static void addTransformers( DispatchTransformer dispatch )
+	{
+		dispatch.add( "$binary", new BinaryTransformer() );
+		dispatch.add( "$timestamp", new BsonTimestampTransformer() );
+		dispatch.add( "$ref", new DBRefTransformer() );
+		dispatch.add( "$date", new NativeDateTransformer() );
+		dispatch.add( "$numberLong", new NativeNumberTransformer() );
+		dispatch.add( "$regex", new NativeRegExpTransformer() );
+		dispatch.add( "$oid", new ObjectIdTransformer() );
+	}
+
 	//
 	// JsonImplementation
 	//
 
 	public void initialize()
 	{
+		// All encoders are dispatched by class
+		ArrayList<JsonEncoder> encoders = new ArrayList<JsonEncoder>();
 		addEncoders( encoders );
 		RhinoJsonImplementation.addEncoders( encoders );
 		GenericExtendedJsonImplementation.addEncoders( encoders );
 		GenericJsonImplementation.addEncoders( encoders );
-		addTransformers( transformers );
+		this.encoders.add( new DispatchEncoder( encoders ) );
+
+		// Extended transformers are dispatched by key, in the same order as
+		// before: ours, then the Rhino ones, then the generic extended ones
+		DispatchTransformer dispatch = new DispatchTransformer();
+		addTransformers( dispatch );
+		transformers.add( dispatch );
 		RhinoJsonImplementation.addTransformers( transformers );
-		GenericExtendedJsonImplementation.addTransformers( transformers );
+		DispatchTransformer genericDispatch = new DispatchTransformer();
+		GenericExtendedJsonImplementation.addTransformers( genericDispatch );
+		transformers.add( genericDispatch );
 	}
 
 	public int getPriority()
@@ -16,8 +16,8 @@ import java.util.HashMap;
 
 import org.mozilla.javascript.Undefined;
 
+import com.mongodb.jvm.json.generic.ClassJsonEncoder;
 import com.threecrickets.jvm.json.JsonContext;
-import com.threecrickets.jvm.json.JsonEncoder;
 import com.threecrickets.jvm.json.generic.MapEncoder;
 
 /**
@@ -25,7 +25,7 @@ import com.threecrickets.jvm.json.generic.MapEncoder;
  * 
  * @author Tal Liron
  */
-public class UndefinedEncoder implements JsonEncoder
+public class UndefinedEncoder implements ClassJsonEncoder
 {
 	//
 	// JsonEncoder
@@ -11,6 +11,7 @@
 
 package org.bson.jvm;
 
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -20,16 +21,28 @@ import java.util.ServiceLoader;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
 import org.bson.BsonDocument;
 import org.bson.BsonDocumentWriter;
+import org.bson.BsonWriter;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.ByteBufferBsonInput;
+import org.bson.json.JsonParseException;
 import org.bson.json.JsonWriterSettings;
+import org.bson.jvm.internal.ByteBufferOutput;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.OutputBufferPool;
+import org.bson.jvm.internal.PooledOutputBuffer;
 
 import com.mongodb.MongoClient;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.jvm.json.ExtendedJsonParser;
 
 /**
  * Conversion to and from BSON and native objects.
@@ -102,6 +115,30 @@ public class Bson
 		return getImplementation().getDocumentClass();
 	}
 
+	/**
+	 * The implementation-specific lazy document class to be used for
+	 * {@link MongoCollection}. Documents of this class decode their fields
+	 * only when they are accessed.
+	 * 
+	 * @return The lazy document class
+	 */
+	public static Class<?> getLazyDocumentClass()
+	{
+		return getImplementation().getLazyDocumentClass();
+	}
+
+	/**
+	 * {@link RawBsonDocument}, the document class to be used for
+	 * {@link MongoCollection} when documents are only passed on as BSON. Useful
+	 * for scripts, which cannot use class literals in all engines.
+	 * 
+	 * @return The raw document class
+	 */
+	public static Class<?> getRawDocumentClass()
+	{
+		return RawBsonDocument.class;
+	}
+
 	/**
 	 * The codec registry to be used for {@link MongoClient}.
 	 * 
@@ -114,6 +151,23 @@ public class Bson
 		return getImplementation().getCodecRegistry( next );
 	}
 
+	/**
+	 * A codec registry to be used for a single {@link MongoCollection} with a
+	 * stable schema. Its documents are decoded with a template learned from
+	 * the first documents it decodes, which is matched against the following
+	 * documents to skip per-field codec lookups.
+	 * 
+	 * @param next
+	 *        The collection's codec registry
+	 * @param sampleSize
+	 *        How many documents to learn the template from
+	 * @return The codec registry
+	 */
+	public static CodecRegistry getTemplateCodecRegistry( CodecRegistry next, int sampleSize )
+	{
+		return getImplementation().getTemplateCodecRegistry( next, sampleSize );
+	}
+
 	/**
 	 * The codec registry to be used for {@link MongoClient}. The driver's
 	 * default codec registry will be appended after ours.
@@ -137,6 +191,18 @@ public class Bson
 		return codecRegistry;
 	}
 
+	/**
+	 * The codec lookup cache shared by the codecs of
+	 * {@link #getCodecRegistry()}. Its hit and miss counters can be used to
+	 * monitor encoding.
+	 * 
+	 * @return The codec cache
+	 */
+	public static CodecCache getCodecCache()
+	{
+		return CodecCache.forRegistry( getCodecRegistry() );
+	}
+
 	//
 	// Static operations
 	//
@@ -162,7 +228,87 @@ public class Bson
 	}
 
 	/**
-	 * Convert JSON text to a {@link BsonDocument}.
+	 * Convert any object to a {@link RawBsonDocument}, specifically supporting
+	 * implementation-specific types. The object is encoded straight to BSON
+	 * bytes, without building a {@link BsonDocument} tree. The driver sends
+	 * raw documents as is, so this is the cheaper choice for documents that
+	 * are only passed on to the driver, such as query filters.
+	 * <p>
+	 * Encoding uses a buffer from the {@link OutputBufferPool#getDefault()
+	 * default output buffer pool}.
+	 * 
+	 * @param object
+	 *        The object
+	 * @return A raw BSON document
+	 */
+	public static RawBsonDocument toRaw( Object object )
+	{
+		if( object == null )
+			return null;
+		else if( object instanceof RawBsonDocument )
+			return (RawBsonDocument) object;
+
+		@SuppressWarnings("unchecked")
+		Codec<Object> codec = (Codec<Object>) getCodecRegistry().get( object.getClass() );
+		OutputBufferPool pool = OutputBufferPool.getDefault();
+		PooledOutputBuffer buffer = pool.acquire();
+		try
+		{
+			codec.encode( new BsonBinaryWriter( buffer ), object, EncoderContext.builder().build() );
+			return new RawBsonDocument( buffer.toByteArray() );
+		}
+		finally
+		{
+			pool.release( buffer );
+		}
+	}
+
+	/**
+	 * Convert a {@link RawBsonDocument} to the implementation-specific
+	 * document class (see {@link #getDocumentClass()}).
+	 * 
+	 * @param raw
+	 *        The raw BSON document
+	 * @return The document
+	 */
+	public static Object fromRaw( RawBsonDocument raw )
+	{
+		if( raw == null )
+			return null;
+
+		Codec<?> codec = getCodecRegistry().get( getDocumentClass() );
+		return codec.decode( new BsonBinaryReader( new ByteBufferBsonInput( raw.getByteBuffer() ) ), DecoderContext.builder().build() );
+	}
+
+	/**
+	 * Encode any object as BSON into a byte buffer, starting at its current
+	 * position, specifically supporting implementation-specific types. On
+	 * return the buffer's position is after the encoded document.
+	 * 
+	 * @param object
+	 *        The object
+	 * @param buffer
+	 *        The byte buffer
+	 * @return The number of bytes written, or 0 if the object is null
+	 * @throws java.nio.BufferOverflowException
+	 *         If the buffer does not have enough room
+	 */
+	public static int toBytes( Object object, ByteBuffer buffer )
+	{
+		if( object == null )
+			return 0;
+
+		@SuppressWarnings("unchecked")
+		Codec<Object> codec = (Codec<Object>) getCodecRegistry().get( object.getClass() );
+		ByteBufferOutput output = new ByteBufferOutput( buffer );
+		codec.encode( new BsonBinaryWriter( output ), object, EncoderContext.builder().build() );
+		return output.getSize();
+	}
+
+	/**
+	 * Convert JSON text to a {@link BsonDocument}. Extended JSON is parsed in
+	 * a single pass via {@link ExtendedJsonParser}. Falls back to the driver's
+	 * parser for JSON it does not support, such as the MongoDB shell's syntax.
 	 * 
 	 * @param json
 	 *        The JSON text
@@ -170,7 +316,32 @@ public class Bson
 	 */
 	public static BsonDocument fromJson( String json )
 	{
-		return BsonDocument.parse( json );
+		BsonDocument bson = new BsonDocument();
+		try
+		{
+			ExtendedJsonParser.parse( json, new BsonDocumentWriter( bson ) );
+		}
+		catch( JsonParseException x )
+		{
+			return BsonDocument.parse( json );
+		}
+		return bson;
+	}
+
+	/**
+	 * Convert extended JSON text to BSON, in a single pass and without
+	 * building intermediate objects.
+	 * 
+	 * @param json
+	 *        The JSON text
+	 * @param writer
+	 *        The BSON writer
+	 * @throws JsonParseException
+	 *         In case of a parsing error
+	 */
+	public static void fromJson( CharSequence json, BsonWriter writer )
+	{
+		ExtendedJsonParser.parse( json, writer );
 	}
 
 	/**
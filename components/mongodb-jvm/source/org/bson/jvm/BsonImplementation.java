@@ -46,6 +46,15 @@ public interface BsonImplementation
 	 */
 	public Class<?> getDocumentClass();
 
+	/**
+	 * An implementation-specific document class to be used for
+	 * {@link MongoCollection} that decodes document fields only when they are
+	 * accessed.
+	 * 
+	 * @return The lazy document class
+	 */
+	public Class<?> getLazyDocumentClass();
+
 	/**
 	 * The codec registry to be used for {@link MongoClient}.
 	 *
@@ -55,6 +64,20 @@ public interface BsonImplementation
 	 */
 	public CodecRegistry getCodecRegistry( CodecRegistry next );
 
+	/**
+	 * A codec registry to be used for a single {@link MongoCollection} with a
+	 * stable schema. Its documents are decoded with a template learned from
+	 * the first documents it decodes. Embedded documents are decoded by the
+	 * next registry, without a template.
+	 * 
+	 * @param next
+	 *        The collection's codec registry
+	 * @param sampleSize
+	 *        How many documents to learn the template from
+	 * @return The codec registry
+	 */
+	public CodecRegistry getTemplateCodecRegistry( CodecRegistry next, int sampleSize );
+
 	/**
 	 * Convert a JVM {@link String} to an implementation-specific string type.
 	 * 
@@ -63,4 +86,13 @@ public interface BsonImplementation
 	 * @return An implementation-specific string
 	 */
 	public Object createString( String string );
+
+	/**
+	 * Convert JVM objects to an implementation-specific array type.
+	 * 
+	 * @param items
+	 *        The array items
+	 * @return An implementation-specific array
+	 */
+	public Object createArray( Object[] items );
 }
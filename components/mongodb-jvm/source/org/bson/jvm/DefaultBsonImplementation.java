@@ -11,7 +11,10 @@
 
 package org.bson.jvm;
 
+import java.util.Arrays;
+
 import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
 import org.bson.codecs.configuration.CodecRegistry;
 
 /**
@@ -41,13 +44,28 @@ public class DefaultBsonImplementation implements BsonImplementation
 		return BsonDocument.class;
 	}
 
+	public Class<?> getLazyDocumentClass()
+	{
+		return RawBsonDocument.class;
+	}
+
 	public CodecRegistry getCodecRegistry( CodecRegistry next )
 	{
 		return next;
 	}
 
+	public CodecRegistry getTemplateCodecRegistry( CodecRegistry next, int sampleSize )
+	{
+		return next;
+	}
+
 	public Object createString( String string )
 	{
 		return string;
 	}
+
+	public Object createArray( Object[] items )
+	{
+		return Arrays.asList( items );
+	}
 }
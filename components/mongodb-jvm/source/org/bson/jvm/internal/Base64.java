@@ -31,6 +31,9 @@ package org.bson.jvm.internal;
  * POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 
 /**
@@ -697,4 +700,231 @@ public class Base64
 
 		return dArr;
 	}
+
+	// ****************************************************************************************
+	// * CharSequence and streaming version
+	// ****************************************************************************************
+
+	/**
+	 * Encodes a raw byte array into BASE64, appending the characters in small
+	 * chunks, so that no representation of the whole result is ever created.
+	 * No line separators are used.
+	 * 
+	 * @param sArr
+	 *        The bytes to convert. If length 0 nothing will be appended.
+	 * @param out
+	 *        Where to append the characters
+	 * @throws IOException
+	 *         In case of an appending error
+	 */
+	public final static void encode( byte[] sArr, Appendable out ) throws IOException
+	{
+		char[] buffer = new char[CHUNK_SIZE];
+		CharBuffer wrapped = CharBuffer.wrap( buffer );
+		Writer writer = out instanceof Writer ? (Writer) out : null;
+
+		// Encode even 24-bits
+		int sLen = sArr.length;
+		int eLen = ( sLen / 3 ) * 3; // Length of even 24-bits.
+		int b = 0;
+		for( int s = 0; s < eLen; )
+		{
+			// Copy next three bytes into lower 24 bits of int, paying attension
+			// to sign.
+			int i = ( sArr[s++] & 0xff ) << 16 | ( sArr[s++] & 0xff ) << 8 | ( sArr[s++] & 0xff );
+
+			// Encode the int into four chars
+			buffer[b++] = CA[( i >>> 18 ) & 0x3f];
+			buffer[b++] = CA[( i >>> 12 ) & 0x3f];
+			buffer[b++] = CA[( i >>> 6 ) & 0x3f];
+			buffer[b++] = CA[i & 0x3f];
+
+			if( b == CHUNK_SIZE )
+			{
+				if( writer != null )
+					writer.write( buffer, 0, b );
+				else
+					out.append( wrapped, 0, b );
+				b = 0;
+			}
+		}
+
+		// Pad and encode last bits if source isn't even 24 bits.
+		int left = sLen - eLen; // 0 - 2.
+		if( left > 0 )
+		{
+			// Prepare the int
+			int i = ( ( sArr[eLen] & 0xff ) << 10 ) | ( left == 2 ? ( ( sArr[sLen - 1] & 0xff ) << 2 ) : 0 );
+
+			// Set last four chars
+			buffer[b++] = CA[i >> 12];
+			buffer[b++] = CA[( i >>> 6 ) & 0x3f];
+			buffer[b++] = left == 2 ? CA[i & 0x3f] : '=';
+			buffer[b++] = '=';
+		}
+
+		if( b > 0 )
+		{
+			if( writer != null )
+				writer.write( buffer, 0, b );
+			else
+				out.append( wrapped, 0, b );
+		}
+	}
+
+	/**
+	 * Decodes a range of BASE64 encoded characters. All illegal characters
+	 * will be ignored and can handle both strings with and without line
+	 * separators.
+	 * 
+	 * @param str
+	 *        The source characters
+	 * @param start
+	 *        The start index (inclusive)
+	 * @param end
+	 *        The end index (exclusive)
+	 * @return The decoded array of bytes. May be of length 0. Will be
+	 *         <code>null</code> if the legal characters (including '=') isn't
+	 *         divideable by 4. (I.e. definitely corrupted).
+	 */
+	public final static byte[] decode( CharSequence str, int start, int end )
+	{
+		// Check special case
+		int sLen = end - start;
+		if( sLen <= 0 )
+			return new byte[0];
+
+		// Count illegal characters (including '\r', '\n') to know what size the
+		// returned array will be,
+		// so we don't have to reallocate & copy it later.
+		int sepCnt = 0; // Number of separator characters.
+		for( int i = start; i < end; i++ )
+		{
+			char c = str.charAt( i );
+			if( ( c > 0xff ) || ( IA[c] < 0 ) )
+				sepCnt++;
+		}
+
+		// Check so that legal chars (including '=') are evenly divideable by 4
+		// as specified in RFC 2045.
+		if( ( sLen - sepCnt ) % 4 != 0 )
+			return null;
+
+		// Count '=' at end
+		int pad = 0;
+		for( int i = end; i > start + 1; )
+		{
+			char c = str.charAt( --i );
+			if( ( c <= 0xff ) && ( IA[c] > 0 ) )
+				break;
+			if( c == '=' )
+				pad++;
+		}
+
+		int len = ( ( sLen - sepCnt ) * 6 >> 3 ) - pad;
+
+		byte[] dArr = new byte[len]; // Preallocate byte[] of exact length
+
+		for( int s = start, d = 0; d < len; )
+		{
+			// Assemble three bytes into an int from four "valid" characters.
+			int i = 0;
+			for( int j = 0; j < 4; j++ )
+			{ // j only increased if a valid char was found.
+				char ch = str.charAt( s++ );
+				int c = ch <= 0xff ? IA[ch] : -1;
+				if( c >= 0 )
+					i |= c << ( 18 - j * 6 );
+				else
+					j--;
+			}
+			// Add the bytes
+			dArr[d++] = (byte) ( i >> 16 );
+			if( d < len )
+			{
+				dArr[d++] = (byte) ( i >> 8 );
+				if( d < len )
+					dArr[d++] = (byte) i;
+			}
+		}
+		return dArr;
+	}
+
+	/**
+	 * Decodes BASE64 encoded characters that are known to be resonably well
+	 * formatted, with the same preconditions as {@link #decodeFast(String)}.
+	 * Unlike that method, the characters need not be a <code>String</code>.
+	 * 
+	 * @param s
+	 *        The source characters. Length 0 will return an empty array.
+	 *        <code>null</code> will throw an exception.
+	 * @return The decoded array of bytes. May be of length 0.
+	 */
+	public final static byte[] decodeFast( CharSequence s )
+	{
+		if( s instanceof String )
+			return decodeFast( (String) s );
+
+		// Check special case
+		int sLen = s.length();
+		if( sLen == 0 )
+			return new byte[0];
+
+		int sIx = 0, eIx = sLen - 1; // Start and end index after trimming.
+
+		// Trim illegal chars from start
+		while( sIx < eIx && IA[s.charAt( sIx ) & 0xff] < 0 )
+			sIx++;
+
+		// Trim illegal chars from end
+		while( eIx > 0 && IA[s.charAt( eIx ) & 0xff] < 0 )
+			eIx--;
+
+		// get the padding count (=) (0, 1 or 2)
+		int pad = s.charAt( eIx ) == '=' ? ( s.charAt( eIx - 1 ) == '=' ? 2 : 1 ) : 0;
+		int cCnt = eIx - sIx + 1; // Content count including possible separators
+		int sepCnt = sLen > 76 ? ( s.charAt( 76 ) == '\r' ? cCnt / 78 : 0 ) << 1 : 0;
+
+		int len = ( ( cCnt - sepCnt ) * 6 >> 3 ) - pad; // The number of decoded
+														// bytes
+		byte[] dArr = new byte[len]; // Preallocate byte[] of exact length
+
+		// Decode all but the last 0 - 2 bytes.
+		int d = 0;
+		for( int cc = 0, eLen = ( len / 3 ) * 3; d < eLen; )
+		{
+			// Assemble three bytes into an int from four "valid" characters.
+			int i = IA[s.charAt( sIx++ )] << 18 | IA[s.charAt( sIx++ )] << 12 | IA[s.charAt( sIx++ )] << 6 | IA[s.charAt( sIx++ )];
+
+			// Add the bytes
+			dArr[d++] = (byte) ( i >> 16 );
+			dArr[d++] = (byte) ( i >> 8 );
+			dArr[d++] = (byte) i;
+
+			// If line separator, jump over it.
+			if( sepCnt > 0 && ++cc == 19 )
+			{
+				sIx += 2;
+				cc = 0;
+			}
+		}
+
+		if( d < len )
+		{
+			// Decode last 1-3 bytes (incl '=') into 1-3 bytes
+			int i = 0;
+			for( int j = 0; sIx <= eIx - pad; j++ )
+				i |= IA[s.charAt( sIx++ )] << ( 18 - j * 6 );
+
+			for( int r = 16; d < len; r -= 8 )
+				dArr[d++] = (byte) ( i >> r );
+		}
+
+		return dArr;
+	}
+
+	/**
+	 * Size of the chunks appended by {@link #encode(byte[], Appendable)}.
+	 */
+	private static final int CHUNK_SIZE = 4096;
 }
\ No newline at end of file
@@ -11,6 +11,8 @@
 
 package org.bson.jvm.internal;
 
+import java.util.Arrays;
+
 import org.bson.BsonReader;
 import org.bson.BsonType;
 import org.bson.BsonWriter;
@@ -39,24 +41,77 @@ public class BsonUtil
 	 *        The codec registry
 	 */
 	public static void writeChild( Object value, BsonWriter writer, EncoderContext encoderContext, CodecRegistry codecRegistry )
+	{
+		writeChild( value, writer, encoderContext, CodecCache.forRegistry( codecRegistry ) );
+	}
+
+	/**
+	 * Encodes a value to a BSON writer with the appropriate codec. Values of
+	 * unsupported classes are written as null.
+	 * 
+	 * @param value
+	 *        The value
+	 * @param writer
+	 *        The BSON writer
+	 * @param encoderContext
+	 *        The encoder context
+	 * @param codecCache
+	 *        The codec cache
+	 */
+	public static void writeChild( Object value, BsonWriter writer, EncoderContext encoderContext, CodecCache codecCache )
 	{
 		if( value == null )
 			writer.writeNull();
-		else
+		else if( !writePrimitive( value, writer ) )
 		{
-			try
-			{
-				@SuppressWarnings("unchecked")
-				Codec<Object> codec = (Codec<Object>) codecRegistry.get( value.getClass() );
-				encoderContext.encodeWithChildContext( codec, writer, value );
-			}
-			catch( CodecConfigurationException x )
-			{
+			Codec<Object> codec = codecCache.get( value.getClass() );
+			if( codec == null )
 				writer.writeNull();
+			else
+			{
+				try
+				{
+					encoderContext.encodeWithChildContext( codec, writer, value );
+				}
+				catch( CodecConfigurationException x )
+				{
+					// A nested codec could not find a codec
+					writer.writeNull();
+				}
 			}
 		}
 	}
 
+	/**
+	 * Writes common Java primitive wrappers and strings directly, without
+	 * codec lookup. The results are the same as those of the driver's default
+	 * codecs for these classes.
+	 * 
+	 * @param value
+	 *        The value
+	 * @param writer
+	 *        The BSON writer
+	 * @return True if written
+	 */
+	public static boolean writePrimitive( Object value, BsonWriter writer )
+	{
+		// These classes are all final, so we can compare classes directly
+		Class<?> clazz = value.getClass();
+		if( clazz == String.class )
+			writer.writeString( (String) value );
+		else if( clazz == Double.class )
+			writer.writeDouble( (Double) value );
+		else if( clazz == Integer.class )
+			writer.writeInt32( (Integer) value );
+		else if( clazz == Boolean.class )
+			writer.writeBoolean( (Boolean) value );
+		else if( clazz == Long.class )
+			writer.writeInt64( (Long) value );
+		else
+			return false;
+		return true;
+	}
+
 	/**
 	 * Decodes a value from a BSON writer with the appopriate codec.
 	 * 
@@ -71,15 +126,171 @@ public class BsonUtil
 	 * @return The value
 	 */
 	public static Object read( BsonReader reader, DecoderContext decoderContext, CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap )
+	{
+		return read( reader, decoderContext, CodecCache.forRegistry( codecRegistry ), bsonTypeClassMap );
+	}
+
+	/**
+	 * Decodes a value from a BSON writer with the appopriate codec.
+	 * 
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @return The value
+	 */
+	public static Object read( BsonReader reader, DecoderContext decoderContext, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap )
 	{
 		BsonType type = reader.getCurrentBsonType();
+		if( type == BsonType.NULL )
+		{
+			// The BSON type class map has no class for null
+			reader.readNull();
+			return null;
+		}
+		return getCodec( type, codecCache, bsonTypeClassMap ).decode( reader, decoderContext );
+	}
+
+	/**
+	 * Reads the next field's type and name. The name is interned in the
+	 * default {@link FieldNamePool}.
+	 * 
+	 * @param reader
+	 *        The BSON reader
+	 * @return The field name, or null at the end of the document
+	 */
+	public static String readName( BsonReader reader )
+	{
+		return reader.readBsonType() != BsonType.END_OF_DOCUMENT ? FieldNamePool.getDefault().intern( reader.readName() ) : null;
+	}
+
+	/**
+	 * Decodes the items of a BSON array into a Java array of exactly the
+	 * array's length.
+	 * <p>
+	 * Runs of items of the same BSON type, which are typical for numeric
+	 * arrays, reuse the codec of the previous item.
+	 * 
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @return The items
+	 */
+	public static Object[] readArray( BsonReader reader, DecoderContext decoderContext, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap )
+	{
+		return readArray( reader, decoderContext, codecCache, bsonTypeClassMap, null );
+	}
+
+	/**
+	 * Like
+	 * {@link #readArray(BsonReader, DecoderContext, CodecCache, BsonTypeClassMap)}
+	 * , except that non-null items are decoded via an {@link ItemDecoder}.
+	 * 
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @param itemDecoder
+	 *        The item decoder, or null to call the codecs directly
+	 * @return The items
+	 */
+	public static Object[] readArray( BsonReader reader, DecoderContext decoderContext, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap, ItemDecoder itemDecoder )
+	{
+		Object[] items = new Object[INITIAL_ARRAY_CAPACITY];
+		int length = 0;
+		BsonType lastType = null;
+		Codec<Object> codec = null;
+
+		reader.readStartArray();
+		BsonType type;
+		while( ( type = reader.readBsonType() ) != BsonType.END_OF_DOCUMENT )
+		{
+			if( length == items.length )
+				items = Arrays.copyOf( items, length * 2 );
+
+			if( type == BsonType.NULL )
+			{
+				reader.readNull();
+				items[length++] = null;
+				continue;
+			}
+
+			if( type != lastType )
+			{
+				codec = getCodec( type, codecCache, bsonTypeClassMap );
+				lastType = type;
+			}
+			items[length++] = itemDecoder != null ? itemDecoder.decode( codec, reader, decoderContext ) : codec.decode( reader, decoderContext );
+		}
+		reader.readEndArray();
+
+		return length == items.length ? items : Arrays.copyOf( items, length );
+	}
+
+	/**
+	 * The codec for a BSON type.
+	 * 
+	 * @param type
+	 *        The BSON type
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @return The codec
+	 * @throws CodecConfigurationException
+	 *         If there is no codec for the type
+	 */
+	public static Codec<Object> getCodec( BsonType type, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap )
+	{
 		Class<?> clazz = bsonTypeClassMap.get( type );
-		return codecRegistry.get( clazz ).decode( reader, decoderContext );
+		Codec<Object> codec = clazz != null ? codecCache.get( clazz ) : null;
+		if( codec == null )
+			throw new CodecConfigurationException( "Can't find a codec for " + type );
+		return codec;
+	}
+
+	/**
+	 * The BSON regular expression options string for JavaScript RegExp flags.
+	 * 
+	 * @param isGlobal
+	 *        The "g" flag
+	 * @param isIgnoreCase
+	 *        The "i" flag
+	 * @param isMultiLine
+	 *        The "m" flag
+	 * @return The options
+	 */
+	public static String getRegularExpressionOptions( boolean isGlobal, boolean isIgnoreCase, boolean isMultiLine )
+	{
+		return REGULAR_EXPRESSION_OPTIONS[( isGlobal ? 1 : 0 ) | ( isIgnoreCase ? 2 : 0 ) | ( isMultiLine ? 4 : 0 )];
 	}
 
 	// //////////////////////////////////////////////////////////////////////////
 	// Private
 
+	private static final int INITIAL_ARRAY_CAPACITY = 16;
+
+	/**
+	 * Indexed by flag bits: 1 for "g", 2 for "i" and 4 for "m".
+	 */
+	private static final String[] REGULAR_EXPRESSION_OPTIONS =
+	{
+		"", "g", "i", "gi", "m", "gm", "im", "gim"
+	};
+
 	private BsonUtil()
 	{
 	}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.ByteBuf;
+import org.bson.ByteBufNIO;
+import org.bson.io.OutputBuffer;
+
+/**
+ * A BSON output buffer that writes into a caller-provided {@link ByteBuffer},
+ * starting at its current position. It does not grow: writing beyond the
+ * buffer's limit throws a {@link java.nio.BufferOverflowException}.
+ *
+ * @author Tal Liron
+ */
+public class ByteBufferOutput extends OutputBuffer
+{
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param buffer
+	 *        The byte buffer
+	 */
+	public ByteBufferOutput( ByteBuffer buffer )
+	{
+		this.buffer = buffer;
+		start = buffer.position();
+	}
+
+	//
+	// BsonOutput
+	//
+
+	public int getPosition()
+	{
+		return buffer.position() - start;
+	}
+
+	public int getSize()
+	{
+		return buffer.position() - start;
+	}
+
+	public void writeBytes( byte[] bytes, int offset, int length )
+	{
+		buffer.put( bytes, offset, length );
+	}
+
+	public void writeByte( int value )
+	{
+		buffer.put( (byte) value );
+	}
+
+	//
+	// OutputBuffer
+	//
+
+	@Override
+	public void truncateToPosition( int newPosition )
+	{
+		if( ( newPosition < 0 ) || ( newPosition > getPosition() ) )
+			throw new IllegalArgumentException();
+		buffer.position( start + newPosition );
+	}
+
+	@Override
+	public List<ByteBuf> getByteBuffers()
+	{
+		ByteBuffer written = buffer.duplicate();
+		written.limit( written.position() );
+		written.position( start );
+		return Collections.<ByteBuf> singletonList( new ByteBufNIO( written.slice() ) );
+	}
+
+	@Override
+	public int pipe( OutputStream out ) throws IOException
+	{
+		int size = getSize();
+		if( buffer.hasArray() )
+			out.write( buffer.array(), buffer.arrayOffset() + start, size );
+		else
+		{
+			byte[] bytes = new byte[size];
+			ByteBuffer written = buffer.duplicate();
+			written.position( start );
+			written.get( bytes );
+			out.write( bytes );
+		}
+		return size;
+	}
+
+	@Override
+	protected void write( int position, int value )
+	{
+		if( ( position < 0 ) || ( position >= getPosition() ) )
+			throw new IllegalArgumentException();
+		buffer.put( start + position, (byte) value );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final ByteBuffer buffer;
+
+	private final int start;
+}
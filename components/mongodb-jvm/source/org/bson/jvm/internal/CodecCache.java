@@ -0,0 +1,180 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecConfigurationException;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Caches codec lookups per class for a {@link CodecRegistry}, including
+ * negative entries for unsupported classes, so that those cost a single map
+ * lookup instead of a thrown {@link CodecConfigurationException}.
+ *
+ * @author Tal Liron
+ */
+public class CodecCache
+{
+	//
+	// Static operations
+	//
+
+	/**
+	 * The shared cache for a codec registry. Codecs created for the same
+	 * registry will share the cache.
+	 *
+	 * @param codecRegistry
+	 *        The codec registry
+	 * @return The codec cache
+	 */
+	public static CodecCache forRegistry( CodecRegistry codecRegistry )
+	{
+		synchronized( codecCaches )
+		{
+			// The cache references the registry, so we must reference the
+			// cache weakly, too, or the registry would never be collected
+			WeakReference<CodecCache> reference = codecCaches.get( codecRegistry );
+			CodecCache codecCache = reference != null ? reference.get() : null;
+			if( codecCache == null )
+			{
+				codecCache = new CodecCache( codecRegistry );
+				codecCaches.put( codecRegistry, new WeakReference<CodecCache>( codecCache ) );
+			}
+			return codecCache;
+		}
+	}
+
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param codecRegistry
+	 *        The codec registry
+	 */
+	public CodecCache( CodecRegistry codecRegistry )
+	{
+		this.codecRegistry = codecRegistry;
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The codec registry.
+	 *
+	 * @return The codec registry
+	 */
+	public CodecRegistry getCodecRegistry()
+	{
+		return codecRegistry;
+	}
+
+	/**
+	 * The number of lookups answered from the cache.
+	 *
+	 * @return The hit count
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * The number of lookups that had to consult the codec registry.
+	 *
+	 * @return The miss count
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * The number of cached classes, including unsupported ones.
+	 *
+	 * @return The size
+	 */
+	public int getSize()
+	{
+		return codecs.size();
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * The codec for a class.
+	 *
+	 * @param clazz
+	 *        The class
+	 * @return The codec or null if the class is not supported by the registry
+	 */
+	@SuppressWarnings("unchecked")
+	public Codec<Object> get( Class<?> clazz )
+	{
+		Object codec = codecs.get( clazz );
+		if( codec != null )
+		{
+			hits.incrementAndGet();
+			return codec != UNSUPPORTED ? (Codec<Object>) codec : null;
+		}
+
+		misses.incrementAndGet();
+		try
+		{
+			codec = codecRegistry.get( clazz );
+		}
+		catch( CodecConfigurationException x )
+		{
+			codec = null;
+		}
+		codecs.put( clazz, codec != null ? codec : UNSUPPORTED );
+		return (Codec<Object>) codec;
+	}
+
+	/**
+	 * Clears the cache and the counters.
+	 */
+	public void clear()
+	{
+		codecs.clear();
+		hits.set( 0 );
+		misses.set( 0 );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final Object UNSUPPORTED = new Object();
+
+	private static final Map<CodecRegistry, WeakReference<CodecCache>> codecCaches = new WeakHashMap<CodecRegistry, WeakReference<CodecCache>>();
+
+	private final CodecRegistry codecRegistry;
+
+	private final ConcurrentMap<Class<?>, Object> codecs = new ConcurrentHashMap<Class<?>, Object>();
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+}
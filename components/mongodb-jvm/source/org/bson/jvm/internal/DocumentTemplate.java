@@ -0,0 +1,276 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.util.Arrays;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+
+/**
+ * A field name and type template for the documents of a collection with a
+ * stable schema, learned from the first documents decoded with it.
+ * <p>
+ * The template is the longest sequence of fields, by name and BSON type, that
+ * all the sampled documents begin with. Once learned, documents matching it
+ * get the template's field name instances, so that equal names are shared,
+ * and a pre-resolved codec for each field, instead of a lookup through the
+ * {@link BsonTypeClassMap}. From the first field that does not match the
+ * template, the rest of the document is decoded as usual.
+ * <p>
+ * Usage from a document codec:
+ *
+ * <pre>
+ * DocumentTemplate.Reader templateReader = template != null ? template.newReader( reader ) : null;
+ * reader.readStartDocument();
+ * String key;
+ * while( ( key = templateReader != null ? templateReader.readName() : BsonUtil.readName( reader ) ) != null )
+ * {
+ * 	Codec&lt;Object&gt; codec = templateReader != null ? templateReader.getCodec() : null;
+ * 	Object value = codec != null ? codec.decode( reader, decoderContext ) : BsonUtil.read( reader, decoderContext, codecCache, bsonTypeClassMap );
+ * 	...
+ * }
+ * reader.readEndDocument();
+ * </pre>
+ *
+ * @author Tal Liron
+ */
+public class DocumentTemplate
+{
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param sampleSize
+	 *        How many documents to learn the template from
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 */
+	public DocumentTemplate( int sampleSize, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap )
+	{
+		this.sampleSize = sampleSize;
+		this.codecCache = codecCache;
+		this.bsonTypeClassMap = bsonTypeClassMap;
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * Whether the template has been learned.
+	 *
+	 * @return True if learned
+	 */
+	public boolean isLearned()
+	{
+		return fields != null;
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Creates a reader for the fields of a single document.
+	 *
+	 * @param reader
+	 *        The BSON reader
+	 * @return The template reader
+	 */
+	public Reader newReader( BsonReader reader )
+	{
+		return new Reader( reader, fields );
+	}
+
+	/**
+	 * Reads the fields of a single document, matching them against the
+	 * template. While the template is still being learned, the fields are
+	 * recorded as a sample.
+	 */
+	public class Reader
+	{
+		//
+		// Operations
+		//
+
+		/**
+		 * Reads the next field's type and name. When the field matches the
+		 * template, the template's instance of the name is returned.
+		 *
+		 * @return The field name, or null at the end of the document
+		 */
+		public String readName()
+		{
+			BsonType type = reader.readBsonType();
+			if( type == BsonType.END_OF_DOCUMENT )
+			{
+				if( fields == null )
+					learn( sampleNames, sampleTypes, index );
+				codec = null;
+				return null;
+			}
+
+			String name = FieldNamePool.getDefault().intern( reader.readName() );
+			int index = this.index++;
+
+			if( fields != null )
+			{
+				if( matching && ( index < fields.names.length ) && ( fields.types[index] == type ) && fields.names[index].equals( name ) )
+				{
+					codec = fields.codecs[index];
+					return fields.names[index];
+				}
+				matching = false;
+				codec = null;
+			}
+			else
+			{
+				if( index == sampleNames.length )
+				{
+					sampleNames = Arrays.copyOf( sampleNames, index * 2 );
+					sampleTypes = Arrays.copyOf( sampleTypes, index * 2 );
+				}
+				sampleNames[index] = name;
+				sampleTypes[index] = type;
+			}
+
+			return name;
+		}
+
+		/**
+		 * The pre-resolved codec for the current field.
+		 *
+		 * @return The codec, or null if the field does not match the
+		 *         template (or is null)
+		 */
+		public Codec<Object> getCodec()
+		{
+			return codec;
+		}
+
+		// //////////////////////////////////////////////////////////////////////////
+		// Private
+
+		private final BsonReader reader;
+
+		private final Fields fields;
+
+		private int index;
+
+		private boolean matching = true;
+
+		private Codec<Object> codec;
+
+		private String[] sampleNames;
+
+		private BsonType[] sampleTypes;
+
+		private Reader( BsonReader reader, Fields fields )
+		{
+			this.reader = reader;
+			this.fields = fields;
+			if( fields == null )
+			{
+				sampleNames = new String[INITIAL_SAMPLE_CAPACITY];
+				sampleTypes = new BsonType[INITIAL_SAMPLE_CAPACITY];
+			}
+		}
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final int INITIAL_SAMPLE_CAPACITY = 16;
+
+	private final int sampleSize;
+
+	private final CodecCache codecCache;
+
+	private final BsonTypeClassMap bsonTypeClassMap;
+
+	/**
+	 * The learned fields, or null while learning.
+	 */
+	private volatile Fields fields;
+
+	/**
+	 * The common fields of the samples so far.
+	 */
+	private String[] names;
+
+	private BsonType[] types;
+
+	private int length;
+
+	private int samples;
+
+	private static class Fields
+	{
+		public Fields( String[] names, BsonType[] types, Codec<Object>[] codecs )
+		{
+			this.names = names;
+			this.types = types;
+			this.codecs = codecs;
+		}
+
+		private final String[] names;
+
+		private final BsonType[] types;
+
+		private final Codec<Object>[] codecs;
+	}
+
+	private synchronized void learn( String[] sampleNames, BsonType[] sampleTypes, int sampleLength )
+	{
+		if( fields != null )
+			return;
+
+		if( names == null )
+		{
+			names = sampleNames;
+			types = sampleTypes;
+			length = sampleLength;
+		}
+		else
+		{
+			// Keep only the fields that all samples begin with
+			int common = 0;
+			while( ( common < length ) && ( common < sampleLength ) && ( types[common] == sampleTypes[common] ) && names[common].equals( sampleNames[common] ) )
+				common++;
+			length = common;
+		}
+
+		if( ++samples < sampleSize )
+			return;
+
+		@SuppressWarnings(
+		{
+			"unchecked", "rawtypes"
+		})
+		Codec<Object>[] codecs = new Codec[length];
+		for( int i = 0; i < length; i++ )
+			// Null has no codec, and is decoded as usual
+			codecs[i] = types[i] != BsonType.NULL ? BsonUtil.getCodec( types[i], codecCache, bsonTypeClassMap ) : null;
+
+		fields = new Fields( Arrays.copyOf( names, length ), Arrays.copyOf( types, length ), codecs );
+		names = null;
+		types = null;
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.bson.io.BsonInput;
+import org.bson.types.ObjectId;
+
+/**
+ * A BSON input that reads field names through a {@link FieldNamePool}. A
+ * field name is the C string that immediately follows a BSON type byte. Other
+ * C strings, namely the patterns and options of regular expressions, are not
+ * pooled.
+ *
+ * @author Tal Liron
+ * @see FieldNamePool#wrap(BsonInput)
+ */
+class FieldNameBsonInput implements BsonInput
+{
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param input
+	 *        The wrapped BSON input
+	 * @param pool
+	 *        The field name pool
+	 */
+	public FieldNameBsonInput( BsonInput input, FieldNamePool pool )
+	{
+		this.input = input;
+		this.pool = pool;
+	}
+
+	//
+	// BsonInput
+	//
+
+	public String readCString()
+	{
+		boolean isName = this.isName;
+		this.isName = false;
+
+		int length = 0;
+		byte b;
+		while( ( b = input.readByte() ) != 0 )
+		{
+			if( length == buffer.length )
+				buffer = Arrays.copyOf( buffer, length * 2 );
+			buffer[length++] = b;
+		}
+		return isName ? pool.intern( buffer, 0, length ) : new String( buffer, 0, length, UTF8 );
+	}
+
+	public int getPosition()
+	{
+		return input.getPosition();
+	}
+
+	public byte readByte()
+	{
+		// A field name may follow
+		isName = true;
+		return input.readByte();
+	}
+
+	public void readBytes( byte[] bytes )
+	{
+		input.readBytes( bytes );
+	}
+
+	public void readBytes( byte[] bytes, int offset, int length )
+	{
+		input.readBytes( bytes, offset, length );
+	}
+
+	public long readInt64()
+	{
+		return input.readInt64();
+	}
+
+	public double readDouble()
+	{
+		return input.readDouble();
+	}
+
+	public int readInt32()
+	{
+		return input.readInt32();
+	}
+
+	public String readString()
+	{
+		return input.readString();
+	}
+
+	public ObjectId readObjectId()
+	{
+		return input.readObjectId();
+	}
+
+	public void skipCString()
+	{
+		isName = false;
+		input.skipCString();
+	}
+
+	public void skip( int numBytes )
+	{
+		input.skip( numBytes );
+	}
+
+	public void mark( int readLimit )
+	{
+		input.mark( readLimit );
+	}
+
+	public void reset()
+	{
+		input.reset();
+	}
+
+	public boolean hasRemaining()
+	{
+		return input.hasRemaining();
+	}
+
+	public void close()
+	{
+		input.close();
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final BsonInput input;
+
+	private final FieldNamePool pool;
+
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	private byte[] buffer = new byte[32];
+
+	/**
+	 * Whether the last read was a byte, which might be a BSON type.
+	 */
+	private boolean isName;
+}
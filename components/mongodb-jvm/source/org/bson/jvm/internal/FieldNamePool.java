@@ -0,0 +1,221 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.bson.io.BsonInput;
+
+/**
+ * A bounded, concurrent pool of interned field names, so that decoded
+ * documents share a single string instance per distinct field name instead
+ * of each holding its own copy.
+ * <p>
+ * Names can be interned from raw UTF-8 bytes, in which case a hit does not
+ * decode a string at all. Use {@link #wrap(BsonInput)} to have a
+ * {@link org.bson.BsonBinaryReader} read its field names this way.
+ * <p>
+ * The pool is a two-way set-associative cache keyed by
+ * {@link String#hashCode()}. For ASCII names, which are the vast majority, the
+ * hash can be computed directly from the bytes. Non-ASCII names are decoded
+ * first. A new name evicts the older of the two names in its set, so the pool
+ * keeps following the names in use instead of filling up for good. Very long
+ * names are returned as is without being pooled.
+ * <p>
+ * Concurrent additions may occasionally lose a name or pool it twice, but
+ * interning always returns a string equal to the name.
+ *
+ * @author Tal Liron
+ */
+public class FieldNamePool
+{
+	//
+	// Static attributes
+	//
+
+	/**
+	 * The pool shared by all our codecs.
+	 *
+	 * @return The default pool
+	 */
+	public static FieldNamePool getDefault()
+	{
+		return defaultPool;
+	}
+
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *        The maximum number of pooled names
+	 */
+	public FieldNamePool( int capacity )
+	{
+		// A power of two of at least the capacity, with a minimum of one set
+		int length = Integer.highestOneBit( Math.max( capacity - 1, 1 ) ) * 2;
+		names = new AtomicReferenceArray<String>( length );
+		mask = length - 2;
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The number of pooled names. Counted on each call.
+	 *
+	 * @return The size
+	 */
+	public int getSize()
+	{
+		int size = 0;
+		for( int i = 0, length = names.length(); i < length; i++ )
+			if( names.get( i ) != null )
+				size++;
+		return size;
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * The pooled instance of a name.
+	 *
+	 * @param name
+	 *        The name
+	 * @return The pooled name, or the name itself if not pooled
+	 */
+	public String intern( String name )
+	{
+		if( name.length() > MAX_NAME_LENGTH )
+			return name;
+
+		int hash = name.hashCode();
+		int i = hash & mask;
+		String first = names.get( i );
+		if( ( first != null ) && ( first.hashCode() == hash ) && first.equals( name ) )
+			return first;
+		String second = names.get( i + 1 );
+		if( ( second != null ) && ( second.hashCode() == hash ) && second.equals( name ) )
+			return second;
+
+		add( i, first, name );
+		return name;
+	}
+
+	/**
+	 * The pooled instance of a name encoded as UTF-8. For ASCII names that are
+	 * already pooled, no string is decoded.
+	 *
+	 * @param bytes
+	 *        The bytes
+	 * @param start
+	 *        The start of the name in the bytes
+	 * @param length
+	 *        The length of the name in bytes
+	 * @return The pooled name, or a new string if not pooled
+	 */
+	public String intern( byte[] bytes, int start, int length )
+	{
+		if( length > MAX_NAME_LENGTH )
+			return new String( bytes, start, length, UTF8 );
+
+		int hash = 0;
+		for( int i = start, end = start + length; i < end; i++ )
+		{
+			byte b = bytes[i];
+			if( b < 0 )
+				// Non-ASCII
+				return intern( new String( bytes, start, length, UTF8 ) );
+			hash = 31 * hash + b;
+		}
+
+		int i = hash & mask;
+		String first = names.get( i );
+		if( ( first != null ) && ( first.hashCode() == hash ) && equals( first, bytes, start, length ) )
+			return first;
+		String second = names.get( i + 1 );
+		if( ( second != null ) && ( second.hashCode() == hash ) && equals( second, bytes, start, length ) )
+			return second;
+
+		String name = new String( bytes, start, length, UTF8 );
+		add( i, first, name );
+		return name;
+	}
+
+	/**
+	 * Wraps a BSON input so that it reads field names through this pool. Other
+	 * C strings, namely the patterns and options of regular expressions, are
+	 * read as usual.
+	 *
+	 * @param input
+	 *        The BSON input
+	 * @return The wrapped BSON input
+	 */
+	public BsonInput wrap( BsonInput input )
+	{
+		return new FieldNameBsonInput( input, this );
+	}
+
+	/**
+	 * Clears the pool.
+	 */
+	public void clear()
+	{
+		for( int i = 0, length = names.length(); i < length; i++ )
+			names.set( i, null );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final int MAX_NAME_LENGTH = 128;
+
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	private static final FieldNamePool defaultPool = new FieldNamePool( 4096 );
+
+	/**
+	 * Mask for the index of the first slot of a set.
+	 */
+	private final int mask;
+
+	/**
+	 * Sets of two slots, the newer name first.
+	 */
+	private final AtomicReferenceArray<String> names;
+
+	private void add( int index, String first, String name )
+	{
+		// Push the current first name into the second slot, evicting the older
+		// name there
+		if( first != null )
+			names.set( index + 1, first );
+		names.set( index, name );
+	}
+
+	private static boolean equals( String name, byte[] bytes, int start, int length )
+	{
+		if( name.length() != length )
+			return false;
+		for( int i = 0; i < length; i++ )
+			if( name.charAt( i ) != bytes[start + i] )
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import org.bson.BsonReader;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+
+/**
+ * Decodes a single item with the codec chosen for it. Allows
+ * {@link BsonUtil#readArray(BsonReader, DecoderContext, CodecCache, org.bson.codecs.BsonTypeClassMap, ItemDecoder)}
+ * to pass extra state, such as a script engine's context, to the codecs.
+ *
+ * @author Tal Liron
+ */
+public interface ItemDecoder
+{
+	/**
+	 * Decodes an item.
+	 *
+	 * @param codec
+	 *        The codec
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @return The item
+	 */
+	public Object decode( Codec<Object> codec, BsonReader reader, DecoderContext decoderContext );
+}
@@ -0,0 +1,395 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.ByteBufNIO;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.DecoderContext;
+import org.bson.io.BsonInput;
+import org.bson.io.ByteBufferBsonInput;
+
+/**
+ * Decodes the fields of a raw BSON document on demand, in the style of the
+ * driver's {@link org.bson.RawBsonDocument}. This is the engine-independent
+ * part of lazy documents.
+ * <p>
+ * Field positions are scanned once, on first use, without decoding field
+ * names. Field values are decoded one at a time. Embedded documents become
+ * lazy documents over the same bytes, and arrays are decoded with their
+ * embedded documents lazy. Embedded DBRefs are decoded eagerly, so that they
+ * are transformed as usual.
+ *
+ * @author Tal Liron
+ */
+public abstract class LazyBsonDecoder
+{
+	//
+	// Static operations
+	//
+
+	/**
+	 * Copies the current document of a BSON reader as raw bytes.
+	 *
+	 * @param reader
+	 *        The BSON reader
+	 * @return The raw document
+	 */
+	public static byte[] readDocument( BsonReader reader )
+	{
+		OutputBufferPool pool = OutputBufferPool.getDefault();
+		PooledOutputBuffer buffer = pool.acquire();
+		try
+		{
+			new BsonBinaryWriter( buffer ).pipe( reader );
+			return buffer.toByteArray();
+		}
+		finally
+		{
+			pool.release( buffer );
+		}
+	}
+
+	/**
+	 * Whether a raw document is a DBRef, meaning that its first field is
+	 * "$ref".
+	 *
+	 * @param bytes
+	 *        The bytes
+	 * @param offset
+	 *        The offset of the document in the bytes
+	 * @return True if a DBRef
+	 */
+	public static boolean isDBRef( byte[] bytes, int offset )
+	{
+		// Skip the document size and the type of the first element
+		int name = offset + 5;
+		if( ( bytes[offset + 4] == 0 ) || ( bytes.length < name + DBREF_NAME.length ) )
+			return false;
+		for( int i = 0; i < DBREF_NAME.length; i++ )
+			if( bytes[name + i] != DBREF_NAME[i] )
+				return false;
+		return true;
+	}
+
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param bytes
+	 *        The raw document
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @param decoderContext
+	 *        The decoder context
+	 */
+	public LazyBsonDecoder( byte[] bytes, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap, DecoderContext decoderContext )
+	{
+		this.bytes = bytes;
+		offset = 0;
+		length = bytes.length;
+		this.codecCache = codecCache;
+		this.bsonTypeClassMap = bsonTypeClassMap;
+		this.decoderContext = decoderContext;
+	}
+
+	/**
+	 * Constructor for an embedded document.
+	 *
+	 * @param parent
+	 *        The decoder of the enclosing document
+	 * @param offset
+	 *        The offset of the embedded document
+	 * @param length
+	 *        The length of the embedded document
+	 */
+	protected LazyBsonDecoder( LazyBsonDecoder parent, int offset, int length )
+	{
+		bytes = parent.bytes;
+		this.offset = offset;
+		this.length = length;
+		codecCache = parent.codecCache;
+		bsonTypeClassMap = parent.bsonTypeClassMap;
+		decoderContext = parent.decoderContext;
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The number of fields.
+	 *
+	 * @return The number of fields
+	 */
+	public int getCount()
+	{
+		if( positions == null )
+			scan();
+		return count;
+	}
+
+	/**
+	 * A field name.
+	 *
+	 * @param index
+	 *        The index of the field
+	 * @return The field name
+	 */
+	public String getName( int index )
+	{
+		if( positions == null )
+			scan();
+		int start = positions[index] + 1;
+		int end = start;
+		while( bytes[end] != 0 )
+			end++;
+		return FieldNamePool.getDefault().intern( bytes, start, end - start );
+	}
+
+	/**
+	 * Whether a field name starts with a digit, meaning that it might be an
+	 * array index. Does not decode the name.
+	 *
+	 * @param index
+	 *        The index of the field
+	 * @return True if the field name starts with a digit
+	 */
+	public boolean startsWithDigit( int index )
+	{
+		if( positions == null )
+			scan();
+		byte b = bytes[positions[index] + 1];
+		return ( b >= '0' ) && ( b <= '9' );
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Finds a field by name. Compares the name to the raw bytes, so no field
+	 * names are decoded.
+	 *
+	 * @param name
+	 *        The field name
+	 * @return The index of the field or -1 if not found
+	 */
+	public int find( String name )
+	{
+		if( positions == null )
+			scan();
+
+		byte[] utf8 = null;
+		for( int i = 0, length = name.length(); i < length; i++ )
+		{
+			if( name.charAt( i ) >= 0x80 )
+			{
+				utf8 = name.getBytes( UTF8 );
+				break;
+			}
+		}
+
+		for( int index = 0; index < count; index++ )
+		{
+			int start = positions[index] + 1;
+			if( utf8 != null ? equals( start, utf8 ) : equals( start, name ) )
+				return index;
+		}
+		return -1;
+	}
+
+	/**
+	 * Decodes a field value.
+	 *
+	 * @param index
+	 *        The index of the field
+	 * @return The value
+	 */
+	public Object decode( int index )
+	{
+		if( positions == null )
+			scan();
+		BsonBinaryReader reader = createReader();
+		BsonInput input = reader.getBsonInput();
+		reader.readStartDocument();
+		input.skip( positions[index] - input.getPosition() );
+		reader.readBsonType();
+		reader.skipName();
+		return decodeValue( reader );
+	}
+
+	/**
+	 * Writes the raw document, without decoding it.
+	 *
+	 * @param writer
+	 *        The BSON writer
+	 */
+	public void pipe( BsonWriter writer )
+	{
+		writer.pipe( createReader() );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Protected
+
+	/**
+	 * Creates a lazy document for an embedded document.
+	 *
+	 * @param offset
+	 *        The offset of the embedded document
+	 * @param length
+	 *        The length of the embedded document
+	 * @return The lazy document
+	 */
+	protected abstract Object newDocument( int offset, int length );
+
+	/**
+	 * Creates an array.
+	 *
+	 * @param items
+	 *        The decoded items
+	 * @return The array
+	 */
+	protected abstract Object newArray( Object[] items );
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+	private static final byte[] DBREF_NAME =
+	{
+		'$', 'r', 'e', 'f', 0
+	};
+
+	private final byte[] bytes;
+
+	private final int offset;
+
+	private final int length;
+
+	private final CodecCache codecCache;
+
+	private final BsonTypeClassMap bsonTypeClassMap;
+
+	private final DecoderContext decoderContext;
+
+	/**
+	 * The positions of the fields (their type bytes) in the bytes. Null until
+	 * scanned.
+	 */
+	private int[] positions;
+
+	private int count;
+
+	private BsonBinaryReader createReader()
+	{
+		return new BsonBinaryReader( FieldNamePool.getDefault().wrap( new ByteBufferBsonInput( new ByteBufNIO( ByteBuffer.wrap( bytes, offset, length ) ) ) ) );
+	}
+
+	private void scan()
+	{
+		int[] positions = new int[16];
+		int count = 0;
+
+		BsonBinaryReader reader = createReader();
+		BsonInput input = reader.getBsonInput();
+		reader.readStartDocument();
+		while( true )
+		{
+			int position = input.getPosition();
+			if( reader.readBsonType() == BsonType.END_OF_DOCUMENT )
+				break;
+			if( count == positions.length )
+				positions = Arrays.copyOf( positions, count * 2 );
+			positions[count++] = position;
+			reader.skipName();
+			reader.skipValue();
+		}
+
+		this.count = count;
+		this.positions = positions;
+	}
+
+	private boolean equals( int start, String name )
+	{
+		int length = name.length();
+		for( int i = 0; i < length; i++ )
+		{
+			byte b = bytes[start + i];
+			if( ( b == 0 ) || ( b != name.charAt( i ) ) )
+				return false;
+		}
+		return bytes[start + length] == 0;
+	}
+
+	private boolean equals( int start, byte[] name )
+	{
+		for( int i = 0; i < name.length; i++ )
+		{
+			byte b = bytes[start + i];
+			if( ( b == 0 ) || ( b != name[i] ) )
+				return false;
+		}
+		return bytes[start + name.length] == 0;
+	}
+
+	private Object decodeValue( BsonBinaryReader reader )
+	{
+		BsonType type = reader.getCurrentBsonType();
+		if( type == BsonType.DOCUMENT )
+		{
+			int position = reader.getBsonInput().getPosition();
+			if( isDBRef( bytes, position ) )
+				return BsonUtil.read( reader, decoderContext, codecCache, bsonTypeClassMap );
+			reader.skipValue();
+			return newDocument( position, readInt32( position ) );
+		}
+		else if( type == BsonType.ARRAY )
+		{
+			Object[] items = new Object[16];
+			int count = 0;
+			reader.readStartArray();
+			while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
+			{
+				// (The binary reader skips array item names by itself)
+				if( count == items.length )
+					items = Arrays.copyOf( items, count * 2 );
+				items[count++] = decodeValue( reader );
+			}
+			reader.readEndArray();
+			return newArray( count == items.length ? items : Arrays.copyOf( items, count ) );
+		}
+		else
+			return BsonUtil.read( reader, decoderContext, codecCache, bsonTypeClassMap );
+	}
+
+	private int readInt32( int position )
+	{
+		// BSON is little-endian
+		return ( bytes[position] & 0xff ) | ( ( bytes[position + 1] & 0xff ) << 8 ) | ( ( bytes[position + 2] & 0xff ) << 16 ) | ( ( bytes[position + 3] & 0xff ) << 24 );
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread-local pool of {@link PooledOutputBuffer} instances for encoding
+ * BSON, so that each encode does not allocate (and grow) a new buffer.
+ * <p>
+ * Each thread retains at most one buffer. Buffers that have grown beyond the
+ * maximum retained capacity are dropped on release, so that a single huge
+ * document does not pin its buffer forever. A nested acquire on the same
+ * thread, while the thread's buffer is in use, gets a new buffer that is not
+ * retained.
+ * <p>
+ * Counters are kept per thread, so that counting does not contend between
+ * threads, and are summed when read.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * PooledOutputBuffer buffer = pool.acquire();
+ * try
+ * {
+ * 	codec.encode( new BsonBinaryWriter( buffer ), object, encoderContext );
+ * 	return buffer.toByteArray();
+ * }
+ * finally
+ * {
+ * 	pool.release( buffer );
+ * }
+ * </pre>
+ *
+ * @author Tal Liron
+ */
+public class OutputBufferPool
+{
+	//
+	// Static attributes
+	//
+
+	/**
+	 * The pool used by {@link org.bson.jvm.Bson} and our codecs.
+	 *
+	 * @return The default pool
+	 */
+	public static OutputBufferPool getDefault()
+	{
+		return defaultPool;
+	}
+
+	/**
+	 * Sets the pool used by {@link org.bson.jvm.Bson} and our codecs.
+	 *
+	 * @param pool
+	 *        The new default pool
+	 */
+	public static void setDefault( OutputBufferPool pool )
+	{
+		if( pool == null )
+			throw new NullPointerException();
+		defaultPool = pool;
+	}
+
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param initialCapacity
+	 *        The initial capacity of new buffers in bytes
+	 * @param maxRetainedCapacity
+	 *        Buffers that grow beyond this capacity in bytes are not retained
+	 */
+	public OutputBufferPool( int initialCapacity, int maxRetainedCapacity )
+	{
+		this.initialCapacity = initialCapacity;
+		this.maxRetainedCapacity = maxRetainedCapacity;
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The initial capacity of new buffers in bytes.
+	 *
+	 * @return The initial capacity
+	 */
+	public int getInitialCapacity()
+	{
+		return initialCapacity;
+	}
+
+	/**
+	 * Buffers that grow beyond this capacity in bytes are not retained.
+	 *
+	 * @return The maximum retained capacity
+	 */
+	public int getMaxRetainedCapacity()
+	{
+		return maxRetainedCapacity;
+	}
+
+	/**
+	 * The number of acquires answered with a retained buffer.
+	 *
+	 * @return The hit count
+	 */
+	public long getHits()
+	{
+		return getCounts()[HITS];
+	}
+
+	/**
+	 * The number of acquires that had to allocate a new buffer.
+	 *
+	 * @return The miss count
+	 */
+	public long getMisses()
+	{
+		return getCounts()[MISSES];
+	}
+
+	/**
+	 * The ratio of hits to acquires.
+	 *
+	 * @return The hit rate, between 0 and 1
+	 */
+	public double getHitRate()
+	{
+		long[] counts = getCounts();
+		long hits = counts[HITS];
+		long acquires = hits + counts[MISSES];
+		return acquires != 0 ? (double) hits / acquires : 0;
+	}
+
+	/**
+	 * The number of buffers that had to grow while in use.
+	 *
+	 * @return The growth count
+	 */
+	public long getGrowths()
+	{
+		return getCounts()[GROWTHS];
+	}
+
+	/**
+	 * The number of buffers dropped on release for exceeding the maximum
+	 * retained capacity.
+	 *
+	 * @return The discard count
+	 */
+	public long getDiscards()
+	{
+		return getCounts()[DISCARDS];
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Acquires an empty buffer. It must be returned with
+	 * {@link #release(PooledOutputBuffer)}.
+	 *
+	 * @return The buffer
+	 */
+	public PooledOutputBuffer acquire()
+	{
+		Slot slot = slots.get();
+		if( slot.inUse )
+		{
+			slot.counters.increment( MISSES );
+			return new PooledOutputBuffer( initialCapacity );
+		}
+
+		if( slot.buffer != null )
+			slot.counters.increment( HITS );
+		else
+		{
+			slot.counters.increment( MISSES );
+			slot.buffer = new PooledOutputBuffer( initialCapacity );
+		}
+		slot.inUse = true;
+		slot.capacity = slot.buffer.getCapacity();
+		return slot.buffer;
+	}
+
+	/**
+	 * Returns a buffer to the pool.
+	 *
+	 * @param buffer
+	 *        The buffer
+	 */
+	public void release( PooledOutputBuffer buffer )
+	{
+		Slot slot = slots.get();
+		if( buffer != slot.buffer )
+		{
+			// Not retained
+			if( buffer.getCapacity() > initialCapacity )
+				slot.counters.increment( GROWTHS );
+			return;
+		}
+
+		int capacity = buffer.getCapacity();
+		if( capacity > slot.capacity )
+			slot.counters.increment( GROWTHS );
+		if( capacity > maxRetainedCapacity )
+		{
+			slot.counters.increment( DISCARDS );
+			slot.buffer = null;
+		}
+		else
+			buffer.reset();
+		slot.inUse = false;
+	}
+
+	/**
+	 * Resets the counters. Buffers retained by threads are not affected.
+	 */
+	public void clear()
+	{
+		synchronized( threadCounters )
+		{
+			// The counters are only written by their threads, so we remember
+			// the current counts instead of zeroing them
+			long[] counts = sumCounts();
+			System.arraycopy( counts, 0, cleared, 0, COUNTERS );
+		}
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final int HITS = 0;
+
+	private static final int MISSES = 1;
+
+	private static final int GROWTHS = 2;
+
+	private static final int DISCARDS = 3;
+
+	private static final int COUNTERS = 4;
+
+	private static volatile OutputBufferPool defaultPool = new OutputBufferPool( 1024, 256 * 1024 );
+
+	private final int initialCapacity;
+
+	private final int maxRetainedCapacity;
+
+	/**
+	 * The counters of live threads. Guarded by itself.
+	 */
+	private final List<Counters> threadCounters = new ArrayList<Counters>();
+
+	/**
+	 * The counts of threads that have died. Guarded by threadCounters.
+	 */
+	private final long[] retired = new long[COUNTERS];
+
+	/**
+	 * The counts at the last {@link #clear()}. Guarded by threadCounters.
+	 */
+	private final long[] cleared = new long[COUNTERS];
+
+	private final ThreadLocal<Slot> slots = new ThreadLocal<Slot>()
+	{
+		@Override
+		protected Slot initialValue()
+		{
+			Slot slot = new Slot();
+			synchronized( threadCounters )
+			{
+				retireDeadThreads();
+				threadCounters.add( slot.counters );
+			}
+			return slot;
+		}
+	};
+
+	private static class Slot
+	{
+		private final Counters counters = new Counters();
+
+		private PooledOutputBuffer buffer;
+
+		private boolean inUse;
+
+		/**
+		 * The buffer's capacity when acquired.
+		 */
+		private int capacity;
+	}
+
+	/**
+	 * A thread's counters. They are written only by their thread, so an
+	 * increment does not need to be atomic.
+	 */
+	private static class Counters
+	{
+		private final WeakReference<Thread> thread = new WeakReference<Thread>( Thread.currentThread() );
+
+		private final AtomicLongArray counts = new AtomicLongArray( COUNTERS );
+
+		private void increment( int counter )
+		{
+			counts.lazySet( counter, counts.get( counter ) + 1 );
+		}
+
+		private boolean isDead()
+		{
+			Thread thread = this.thread.get();
+			return ( thread == null ) || !thread.isAlive();
+		}
+	}
+
+	/**
+	 * The counts since the last {@link #clear()}.
+	 */
+	private long[] getCounts()
+	{
+		synchronized( threadCounters )
+		{
+			long[] counts = sumCounts();
+			for( int i = 0; i < COUNTERS; i++ )
+				counts[i] -= cleared[i];
+			return counts;
+		}
+	}
+
+	/**
+	 * The counts since the pool was created. Must be called while holding
+	 * threadCounters.
+	 */
+	private long[] sumCounts()
+	{
+		retireDeadThreads();
+		long[] counts = retired.clone();
+		for( Counters counters : threadCounters )
+			for( int i = 0; i < COUNTERS; i++ )
+				counts[i] += counters.counts.get( i );
+		return counts;
+	}
+
+	/**
+	 * Folds the counters of dead threads into the retired counts. Must be
+	 * called while holding threadCounters.
+	 */
+	private void retireDeadThreads()
+	{
+		for( Iterator<Counters> i = threadCounters.iterator(); i.hasNext(); )
+		{
+			Counters counters = i.next();
+			if( counters.isDead() )
+			{
+				for( int c = 0; c < COUNTERS; c++ )
+					retired[c] += counters.counts.get( c );
+				i.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.ByteBuf;
+import org.bson.ByteBufNIO;
+import org.bson.io.OutputBuffer;
+
+/**
+ * A growable BSON output buffer that can be reset and reused. Unlike the
+ * driver's {@link org.bson.io.BasicOutputBuffer}, its capacity is exposed, so
+ * that an {@link OutputBufferPool} can decide whether to retain it.
+ *
+ * @author Tal Liron
+ * @see OutputBufferPool
+ */
+public class PooledOutputBuffer extends OutputBuffer
+{
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param initialCapacity
+	 *        The initial capacity in bytes
+	 */
+	public PooledOutputBuffer( int initialCapacity )
+	{
+		bytes = new byte[initialCapacity];
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The current capacity in bytes.
+	 *
+	 * @return The capacity
+	 */
+	public int getCapacity()
+	{
+		return bytes.length;
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Empties the buffer while keeping its capacity.
+	 */
+	public void reset()
+	{
+		position = 0;
+	}
+
+	//
+	// BsonOutput
+	//
+
+	public int getPosition()
+	{
+		return position;
+	}
+
+	public int getSize()
+	{
+		return position;
+	}
+
+	public void writeBytes( byte[] bytes, int offset, int length )
+	{
+		ensure( length );
+		System.arraycopy( bytes, offset, this.bytes, position, length );
+		position += length;
+	}
+
+	public void writeByte( int value )
+	{
+		ensure( 1 );
+		bytes[position++] = (byte) value;
+	}
+
+	//
+	// OutputBuffer
+	//
+
+	@Override
+	public byte[] toByteArray()
+	{
+		return Arrays.copyOf( bytes, position );
+	}
+
+	@Override
+	public void truncateToPosition( int newPosition )
+	{
+		if( ( newPosition < 0 ) || ( newPosition > position ) )
+			throw new IllegalArgumentException();
+		position = newPosition;
+	}
+
+	@Override
+	public List<ByteBuf> getByteBuffers()
+	{
+		return Collections.<ByteBuf> singletonList( new ByteBufNIO( ByteBuffer.wrap( bytes, 0, position ).slice() ) );
+	}
+
+	@Override
+	public int pipe( OutputStream out ) throws IOException
+	{
+		out.write( bytes, 0, position );
+		return position;
+	}
+
+	@Override
+	public void close()
+	{
+	}
+
+	@Override
+	protected void write( int position, int value )
+	{
+		if( ( position < 0 ) || ( position >= this.position ) )
+			throw new IllegalArgumentException();
+		bytes[position] = (byte) value;
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private byte[] bytes;
+
+	private int position;
+
+	private void ensure( int length )
+	{
+		int needed = position + length;
+		if( needed > bytes.length )
+			bytes = Arrays.copyOf( bytes, Math.max( needed, bytes.length * 2 ) );
+	}
+}
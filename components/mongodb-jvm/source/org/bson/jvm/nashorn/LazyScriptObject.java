@@ -0,0 +1,276 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.nashorn;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.DecoderContext;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.LazyBsonDecoder;
+
+import jdk.internal.dynalink.CallSiteDescriptor;
+import jdk.internal.dynalink.linker.GuardedInvocation;
+import jdk.internal.dynalink.linker.LinkRequest;
+import jdk.nashorn.internal.objects.Global;
+import jdk.nashorn.internal.runtime.FindProperty;
+import jdk.nashorn.internal.runtime.Property;
+import jdk.nashorn.internal.runtime.PropertyMap;
+import jdk.nashorn.internal.runtime.ScriptObject;
+import jdk.nashorn.internal.runtime.arrays.ArrayIndex;
+
+/**
+ * A Nashorn object backed by a raw BSON document, which decodes its fields
+ * only when they are first accessed. Embedded documents are lazy, too.
+ * <p>
+ * Use this class as the document class of a MongoDB collection in order to
+ * decode its documents lazily. Otherwise it behaves like a regular JavaScript
+ * object, and can be modified. If none of its fields have been accessed it is
+ * encoded by copying the raw BSON.
+ * <p>
+ * Every instance starts with its own property map. Nashorn links property
+ * access by property map, and a shared map would let a call site linked for
+ * one instance read another instance's undecoded fields.
+ *
+ * @author Tal Liron
+ */
+public class LazyScriptObject extends ScriptObject
+{
+	//
+	// Attributes
+	//
+
+	/**
+	 * Whether the raw BSON has not been touched yet.
+	 *
+	 * @return True if untouched
+	 */
+	public boolean isRaw()
+	{
+		return !touched;
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Writes the raw BSON if it has not been touched yet.
+	 *
+	 * @param writer
+	 *        The BSON writer
+	 * @return True if written
+	 */
+	public boolean pipe( BsonWriter writer )
+	{
+		if( !isRaw() )
+			return false;
+		decoder.pipe( writer );
+		return true;
+	}
+
+	//
+	// ScriptObject
+	//
+
+	@Override
+	public Object getOwnPropertyDescriptor( String key )
+	{
+		decode( key );
+		return super.getOwnPropertyDescriptor( key );
+	}
+
+	@Override
+	public boolean defineOwnProperty( String key, Object propertyDesc, boolean reject )
+	{
+		index();
+		touched = true;
+		return super.defineOwnProperty( key, propertyDesc, reject );
+	}
+
+	@Override
+	public boolean delete( Object key, boolean strict )
+	{
+		index();
+		touched = true;
+		return super.delete( key, strict );
+	}
+
+	@Override
+	protected FindProperty findProperty( String key, boolean deep, ScriptObject start )
+	{
+		decode( key );
+		return super.findProperty( key, deep, start );
+	}
+
+	@Override
+	protected GuardedInvocation findSetMethod( CallSiteDescriptor desc, LinkRequest request )
+	{
+		index();
+		touched = true;
+		return super.findSetMethod( desc, request );
+	}
+
+	@Override
+	protected String[] getOwnKeys( boolean all, Set<String> nonEnumerable )
+	{
+		index();
+		return super.getOwnKeys( all, nonEnumerable );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	/**
+	 * Placeholder for field values that have not been decoded yet.
+	 */
+	private static final Object UNDECODED = new Object();
+
+	private final Decoder decoder;
+
+	/**
+	 * Field names mapped to their indexes in the raw BSON, for fields that have
+	 * not been decoded yet. Null until indexed.
+	 */
+	private Map<String, Integer> undecoded;
+
+	private boolean touched;
+
+	/**
+	 * Decodes Nashorn values.
+	 */
+	static class Decoder extends LazyBsonDecoder
+	{
+		public Decoder( byte[] bytes, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap, DecoderContext decoderContext )
+		{
+			super( bytes, codecCache, bsonTypeClassMap, decoderContext );
+		}
+
+		private Decoder( Decoder parent, int offset, int length )
+		{
+			super( parent, offset, length );
+		}
+
+		@Override
+		protected Object newDocument( int offset, int length )
+		{
+			return new LazyScriptObject( new Decoder( this, offset, length ) );
+		}
+
+		@Override
+		protected Object newArray( Object[] items )
+		{
+			// The native array will use our Java array as is
+			return Global.allocate( items );
+		}
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param decoder
+	 *        The decoder
+	 */
+	LazyScriptObject( Decoder decoder )
+	{
+		super( Global.objectPrototype(), PropertyMap.newMap() );
+		this.decoder = decoder;
+
+		// Array index keys are stored in array data, which is accessed without
+		// property lookup, so we must decode them now
+		for( int i = 0, count = decoder.getCount(); i < count; i++ )
+		{
+			if( decoder.startsWithDigit( i ) )
+			{
+				String name = decoder.getName( i );
+				if( isArrayIndex( name ) )
+				{
+					touched = true;
+					put( name, decoder.decode( i ), false );
+				}
+			}
+		}
+	}
+
+	private static boolean isArrayIndex( String key )
+	{
+		return ArrayIndex.isValidArrayIndex( ArrayIndex.getArrayIndex( key ) );
+	}
+
+	/**
+	 * Adds properties for all fields in document order, so that enumeration
+	 * order is that of the document, with placeholders as values for fields
+	 * that have not been decoded yet. Indexing does not by itself touch the
+	 * raw BSON.
+	 */
+	private void index()
+	{
+		if( undecoded != null )
+			return;
+		int count = decoder.getCount();
+		undecoded = new HashMap<String, Integer>( count * 2 );
+		for( int i = 0; i < count; i++ )
+		{
+			String name = decoder.getName( i );
+			if( decoder.startsWithDigit( i ) && isArrayIndex( name ) )
+				// Already decoded in the constructor
+				continue;
+			Property property = getMap().findProperty( name );
+			if( property != null )
+			{
+				// Decoded before indexing, so move it to its place
+				Object value = get( name );
+				deleteOwnProperty( property );
+				addOwnProperty( name, Property.WRITABLE_ENUMERABLE_CONFIGURABLE, value );
+			}
+			else
+			{
+				addOwnProperty( name, Property.WRITABLE_ENUMERABLE_CONFIGURABLE, UNDECODED );
+				undecoded.put( name, i );
+			}
+		}
+	}
+
+	private void decode( String key )
+	{
+		if( undecoded == null )
+		{
+			// Before indexing we look up single fields without decoding any
+			// other field names, and add them in access order
+			if( ( getMap().findProperty( key ) == null ) && !isArrayIndex( key ) )
+			{
+				int index = decoder.find( key );
+				if( index != -1 )
+				{
+					touched = true;
+					addOwnProperty( key, Property.WRITABLE_ENUMERABLE_CONFIGURABLE, decoder.decode( index ) );
+				}
+				else
+					// A miss (such as a prototype lookup) scanned all field
+					// names, so we index them in order to not scan again
+					index();
+			}
+		}
+		else if( !undecoded.isEmpty() )
+		{
+			Integer index = undecoded.remove( key );
+			if( index != null )
+			{
+				touched = true;
+				put( key, decoder.decode( index ), false );
+			}
+		}
+	}
+}
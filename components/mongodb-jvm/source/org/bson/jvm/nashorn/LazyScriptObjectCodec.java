@@ -0,0 +1,89 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.nashorn;
+
+import java.nio.ByteBuffer;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.LazyBsonDecoder;
+
+/**
+ * A BSON codec for {@link LazyScriptObject}. DBRefs are decoded eagerly via
+ * {@link ScriptObjectCodec}.
+ *
+ * @author Tal Liron
+ */
+@SuppressWarnings("rawtypes")
+public class LazyScriptObjectCodec implements Codec
+{
+	//
+	// Construction
+	//
+
+	/**
+	 * Constructor.
+	 *
+	 * @param codecRegistry
+	 *        The codec registry
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 */
+	public LazyScriptObjectCodec( CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap )
+	{
+		codecCache = CodecCache.forRegistry( codecRegistry );
+		this.bsonTypeClassMap = bsonTypeClassMap;
+		scriptObjectCodec = new ScriptObjectCodec( codecRegistry, bsonTypeClassMap );
+	}
+
+	//
+	// Codec
+	//
+
+	public Class getEncoderClass()
+	{
+		return LazyScriptObject.class;
+	}
+
+	@SuppressWarnings("unchecked")
+	public void encode( BsonWriter writer, Object object, EncoderContext encoderContext )
+	{
+		if( !( (LazyScriptObject) object ).pipe( writer ) )
+			scriptObjectCodec.encode( writer, object, encoderContext );
+	}
+
+	public Object decode( BsonReader reader, DecoderContext decoderContext )
+	{
+		byte[] bytes = LazyBsonDecoder.readDocument( reader );
+
+		if( LazyBsonDecoder.isDBRef( bytes, 0 ) )
+			return scriptObjectCodec.decode( new BsonBinaryReader( ByteBuffer.wrap( bytes ) ), decoderContext );
+
+		return new LazyScriptObject( new LazyScriptObject.Decoder( bytes, codecCache, bsonTypeClassMap, decoderContext ) );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private final CodecCache codecCache;
+
+	private final BsonTypeClassMap bsonTypeClassMap;
+
+	private final ScriptObjectCodec scriptObjectCodec;
+}
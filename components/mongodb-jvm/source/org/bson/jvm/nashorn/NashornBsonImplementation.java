@@ -15,6 +15,7 @@ import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.jvm.BsonImplementation;
 
+import jdk.nashorn.internal.objects.Global;
 import jdk.nashorn.internal.objects.NativeArray;
 import jdk.nashorn.internal.objects.NativeString;
 import jdk.nashorn.internal.runtime.ScriptObject;
@@ -48,15 +49,34 @@ public class NashornBsonImplementation implements BsonImplementation
 		return ScriptObject.class;
 	}
 
+	public Class<?> getLazyDocumentClass()
+	{
+		return LazyScriptObject.class;
+	}
+
 	public CodecRegistry getCodecRegistry( CodecRegistry next )
 	{
-		return CodecRegistries.fromRegistries(
+		NashornCodecProvider provider = new NashornCodecProvider();
+		CodecRegistry codecRegistry = CodecRegistries.fromRegistries(
 			CodecRegistries.fromCodecs( new ConsStringCodec(), new NativeBooleanCodec(), new NativeDateCodec(), new NativeNumberCodec(), new NativeRegExpCodec(), new NativeStringCodec(), new UndefinedCodec() ),
-			CodecRegistries.fromProviders( new NashornCodecProvider() ), next );
+			CodecRegistries.fromProviders( provider ), next );
+		provider.setCodecRegistry( codecRegistry );
+		return codecRegistry;
+	}
+
+	public CodecRegistry getTemplateCodecRegistry( CodecRegistry next, int sampleSize )
+	{
+		ScriptObjectCodec scriptObjectCodec = new ScriptObjectCodec( next, new NashornCodecProvider().getBsonTypeClassMap(), sampleSize );
+		return CodecRegistries.fromRegistries( CodecRegistries.fromCodecs( scriptObjectCodec ), next );
 	}
 
 	public Object createString( String string )
 	{
 		return NativeString.constructor( true, null, string );
 	}
+
+	public Object createArray( Object[] items )
+	{
+		return Global.allocate( items );
+	}
 }
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.nashorn;
+
+import org.bson.BsonWriter;
+import org.bson.codecs.EncoderContext;
+import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
+
+import jdk.nashorn.internal.runtime.ConsString;
+import jdk.nashorn.internal.runtime.Undefined;
+
+/**
+ * Nashorn-specific encoding utilities.
+ * 
+ * @author Tal Liron
+ */
+class NashornBsonUtil
+{
+	/**
+	 * Encodes a value to a BSON writer. Nashorn's native strings and undefined,
+	 * as well as Java primitives, are written directly, and other values are
+	 * delegated to
+	 * {@link BsonUtil#writeChild(Object, BsonWriter, EncoderContext, CodecCache)}.
+	 * 
+	 * @param value
+	 *        The value
+	 * @param writer
+	 *        The BSON writer
+	 * @param encoderContext
+	 *        The encoder context
+	 * @param codecCache
+	 *        The codec cache
+	 */
+	public static void writeChild( Object value, BsonWriter writer, EncoderContext encoderContext, CodecCache codecCache )
+	{
+		if( value instanceof ConsString )
+			writer.writeString( value.toString() );
+		else if( value instanceof Undefined )
+			writer.writeUndefined();
+		else
+			BsonUtil.writeChild( value, writer, encoderContext, codecCache );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private NashornBsonUtil()
+	{
+	}
+}
@@ -64,6 +64,44 @@ public class NashornCodecProvider implements CodecProvider
 		bsonTypeClassMap = new BsonTypeClassMap( replacements );
 	}
 
+	//
+	// Attributes
+	//
+
+	/**
+	 * The BSON type class map used by our codecs.
+	 * 
+	 * @return The BSON type class map
+	 */
+	public BsonTypeClassMap getBsonTypeClassMap()
+	{
+		return bsonTypeClassMap;
+	}
+
+	/**
+	 * The codec registry that this provider is part of.
+	 * 
+	 * @return The codec registry or null if not set
+	 */
+	public CodecRegistry getCodecRegistry()
+	{
+		return codecRegistry;
+	}
+
+	/**
+	 * Sets the codec registry that this provider is part of. Our codecs then
+	 * look up the codecs of child values there, rather than in the per-class
+	 * registry that the driver passes to {@link #get(Class, CodecRegistry)},
+	 * so that they all share the same {@link org.bson.jvm.internal.CodecCache}.
+	 * 
+	 * @param codecRegistry
+	 *        The codec registry
+	 */
+	public void setCodecRegistry( CodecRegistry codecRegistry )
+	{
+		this.codecRegistry = codecRegistry;
+	}
+
 	//
 	// CodecProvider
 	//
@@ -72,16 +110,18 @@ public class NashornCodecProvider implements CodecProvider
 	public <T> Codec<T> get( Class<T> clazz, CodecRegistry registry )
 	{
 		if( clazz == Document.class )
-			return (Codec<T>) new DocumentCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getDocumentCodec();
 		else if( clazz == DBObject.class )
-			return (Codec<T>) new DBObjectCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getDBObjectCodec();
 		else if( clazz == NativeArray.class )
-			return (Codec<T>) new NativeArrayCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getNativeArrayCodec();
+		else if( clazz == LazyScriptObject.class )
+			return (Codec<T>) getCodecs( registry ).getLazyScriptObjectCodec();
 		// Nashorn uses subclasses of ScriptObject, such as JO4
 		else if( ScriptObject.class.isAssignableFrom( clazz ) )
-			return (Codec<T>) new ScriptObjectCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getScriptObjectCodec();
 		else if( clazz == ScriptObjectMirror.class )
-			return (Codec<T>) new ScriptObjectMirrorCodec( registry );
+			return (Codec<T>) getCodecs( registry ).getScriptObjectMirrorCodec();
 		return null;
 	}
 
@@ -89,4 +129,105 @@ public class NashornCodecProvider implements CodecProvider
 	// Private
 
 	private final BsonTypeClassMap bsonTypeClassMap;
+
+	private volatile CodecRegistry codecRegistry;
+
+	private volatile Codecs codecs;
+
+	/**
+	 * The codecs that depend on the codec registry. Each is created when
+	 * first requested, in a benign race: at worst it is created more than
+	 * once.
+	 */
+	private class Codecs
+	{
+		public Codecs( CodecRegistry registry )
+		{
+			this.registry = registry;
+		}
+
+		public DocumentCodec getDocumentCodec()
+		{
+			DocumentCodec codec = documentCodec;
+			if( codec == null )
+				documentCodec = codec = new DocumentCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public DBObjectCodec getDBObjectCodec()
+		{
+			DBObjectCodec codec = dbObjectCodec;
+			if( codec == null )
+				dbObjectCodec = codec = new DBObjectCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public NativeArrayCodec getNativeArrayCodec()
+		{
+			NativeArrayCodec codec = nativeArrayCodec;
+			if( codec == null )
+				nativeArrayCodec = codec = new NativeArrayCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public ScriptObjectCodec getScriptObjectCodec()
+		{
+			ScriptObjectCodec codec = scriptObjectCodec;
+			if( codec == null )
+				scriptObjectCodec = codec = new ScriptObjectCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public ScriptObjectMirrorCodec getScriptObjectMirrorCodec()
+		{
+			ScriptObjectMirrorCodec codec = scriptObjectMirrorCodec;
+			if( codec == null )
+				scriptObjectMirrorCodec = codec = new ScriptObjectMirrorCodec( registry );
+			return codec;
+		}
+
+		public LazyScriptObjectCodec getLazyScriptObjectCodec()
+		{
+			LazyScriptObjectCodec codec = lazyScriptObjectCodec;
+			if( codec == null )
+				lazyScriptObjectCodec = codec = new LazyScriptObjectCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		private final CodecRegistry registry;
+
+		private volatile DocumentCodec documentCodec;
+
+		private volatile DBObjectCodec dbObjectCodec;
+
+		private volatile NativeArrayCodec nativeArrayCodec;
+
+		private volatile ScriptObjectCodec scriptObjectCodec;
+
+		private volatile ScriptObjectMirrorCodec scriptObjectMirrorCodec;
+
+		private volatile LazyScriptObjectCodec lazyScriptObjectCodec;
+	}
+
+	/**
+	 * Our codecs are created once for the registry we are part of. If it is
+	 * not set, the requested codec is created for the registry passed by the
+	 * driver, which differs per class (the driver caches the codecs it gets
+	 * from us).
+	 */
+	private Codecs getCodecs( CodecRegistry registry )
+	{
+		CodecRegistry codecRegistry = this.codecRegistry;
+		if( codecRegistry == null )
+			return new Codecs( registry );
+
+		Codecs codecs = this.codecs;
+		if( ( codecs == null ) || ( codecs.registry != codecRegistry ) )
+		{
+			// Benign race: at worst we create the codecs more than once
+			codecs = new Codecs( codecRegistry );
+			this.codecs = codecs;
+		}
+		return codecs;
+	}
 }
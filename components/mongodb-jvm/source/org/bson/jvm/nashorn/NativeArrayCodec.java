@@ -11,9 +11,6 @@
 
 package org.bson.jvm.nashorn;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.bson.BsonReader;
 import org.bson.BsonType;
 import org.bson.BsonWriter;
@@ -23,7 +20,9 @@ import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
 
+import jdk.nashorn.internal.objects.Global;
 import jdk.nashorn.internal.objects.NativeArray;
 import jdk.nashorn.internal.runtime.arrays.ArrayData;
 
@@ -48,7 +47,7 @@ public class NativeArrayCodec implements Codec<NativeArray>
 	 */
 	public NativeArrayCodec( CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap )
 	{
-		this.codecRegistry = codecRegistry;
+		codecCache = CodecCache.forRegistry( codecRegistry );
 		this.bsonTypeClassMap = bsonTypeClassMap;
 	}
 
@@ -69,34 +68,23 @@ public class NativeArrayCodec implements Codec<NativeArray>
 		for( int i = 0, length = (int) data.length(); i < length; i++ )
 		{
 			Object item = data.getObject( i );
-			BsonUtil.writeChild( item, writer, encoderContext, codecRegistry );
+			NashornBsonUtil.writeChild( item, writer, encoderContext, codecCache );
 		}
 		writer.writeEndArray();
 	}
 
 	public NativeArray decode( BsonReader reader, DecoderContext decoderContext )
 	{
-		List<Object> list = new ArrayList<Object>();
-
-		reader.readStartArray();
-		while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
-		{
-			Object item = BsonUtil.read( reader, decoderContext, codecRegistry, bsonTypeClassMap );
-			list.add( item );
-		}
-		reader.readEndArray();
+		Object[] items = BsonUtil.readArray( reader, decoderContext, codecCache, bsonTypeClassMap );
 
-		NativeArray nativeArray = (NativeArray) NativeArray.construct( true, null, list.size() );
-		int index = 0;
-		for( Object item : list )
-			nativeArray.set( index++, item, 0 );
-		return nativeArray;
+		// The native array will use our Java array as is
+		return Global.allocate( items );
 	}
 
 	// //////////////////////////////////////////////////////////////////////////
 	// Private
 
-	private final CodecRegistry codecRegistry;
+	private final CodecCache codecCache;
 
 	private final BsonTypeClassMap bsonTypeClassMap;
 }
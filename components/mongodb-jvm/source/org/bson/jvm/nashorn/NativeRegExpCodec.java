@@ -17,6 +17,7 @@ import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
+import org.bson.jvm.internal.BsonUtil;
 
 import jdk.nashorn.internal.objects.NativeBoolean;
 import jdk.nashorn.internal.objects.NativeRegExp;
@@ -39,19 +40,9 @@ public class NativeRegExpCodec implements Codec<NativeRegExp>
 
 	public void encode( BsonWriter writer, NativeRegExp nativeRegExp, EncoderContext encoderContext )
 	{
-		String source = nativeRegExp.get( "source" ).toString();
-
-		Object isGlobal = nativeRegExp.get( "global" );
-		Object isIgnoreCase = nativeRegExp.get( "ignoreCase" );
-		Object isMultiLine = nativeRegExp.get( "multiline" );
-
-		String options = "";
-		if( ( ( isGlobal instanceof Boolean ) && ( ( (Boolean) isGlobal ).booleanValue() ) ) || ( ( isGlobal instanceof NativeBoolean ) && ( (NativeBoolean) isGlobal ).booleanValue() ) )
-			options += "g";
-		if( ( ( isIgnoreCase instanceof Boolean ) && ( ( (Boolean) isIgnoreCase ).booleanValue() ) ) || ( ( isIgnoreCase instanceof NativeBoolean ) && ( (NativeBoolean) isIgnoreCase ).booleanValue() ) )
-			options += "i";
-		if( ( ( isMultiLine instanceof Boolean ) && ( ( (Boolean) isMultiLine ).booleanValue() ) ) || ( ( isMultiLine instanceof NativeBoolean ) && ( (NativeBoolean) isMultiLine ).booleanValue() ) )
-			options += "m";
+		// Use the getters directly rather than property lookups
+		String source = NativeRegExp.source( nativeRegExp ).toString();
+		String options = BsonUtil.getRegularExpressionOptions( isTrue( NativeRegExp.global( nativeRegExp ) ), isTrue( NativeRegExp.ignoreCase( nativeRegExp ) ), isTrue( NativeRegExp.multiline( nativeRegExp ) ) );
 
 		writer.writeRegularExpression( new BsonRegularExpression( source, options ) );
 	}
@@ -59,6 +50,19 @@ public class NativeRegExpCodec implements Codec<NativeRegExp>
 	public NativeRegExp decode( BsonReader reader, DecoderContext decoderContext )
 	{
 		BsonRegularExpression bsonRegularExpression = reader.readRegularExpression();
+		// Nashorn caches compiled regular expressions by itself
 		return (NativeRegExp) NativeRegExp.constructor( true, null, bsonRegularExpression.getPattern(), bsonRegularExpression.getOptions() );
 	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static boolean isTrue( Object value )
+	{
+		if( value instanceof Boolean )
+			return ( (Boolean) value ).booleanValue();
+		else if( value instanceof NativeBoolean )
+			return ( (NativeBoolean) value ).booleanValue();
+		return false;
+	}
 }
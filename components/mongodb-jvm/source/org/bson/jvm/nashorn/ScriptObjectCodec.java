@@ -11,8 +11,11 @@
 
 package org.bson.jvm.nashorn;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.bson.BsonReader;
-import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.BsonTypeClassMap;
 import org.bson.codecs.Codec;
@@ -20,14 +23,24 @@ import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.DocumentTemplate;
 
 import com.mongodb.jvm.json.nashorn.DBRefTransformer;
 
 import jdk.nashorn.internal.objects.Global;
 import jdk.nashorn.internal.runtime.ScriptObject;
+import jdk.nashorn.internal.runtime.arrays.ArrayIndex;
+import jdk.nashorn.internal.scripts.JO;
 
 /**
  * A BSON codec for Nashorn's native {@link ScriptObject}.
+ * <p>
+ * Decoded objects are created the way Nashorn's JSON.parse creates them: all
+ * at once, with their values in a spill array and a property map of spill
+ * properties. Property maps are reused through learned
+ * {@link ScriptObjectShape} instances, so that documents with the same field
+ * names share a property map.
  * 
  * @author Tal Liron
  */
@@ -48,8 +61,25 @@ public class ScriptObjectCodec implements Codec
 	 */
 	public ScriptObjectCodec( CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap )
 	{
-		this.codecRegistry = codecRegistry;
+		this( codecRegistry, bsonTypeClassMap, 0 );
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param codecRegistry
+	 *        The codec registry
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @param templateSampleSize
+	 *        If greater than zero, documents will be decoded with a
+	 *        {@link DocumentTemplate} learned from this many documents
+	 */
+	public ScriptObjectCodec( CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap, int templateSampleSize )
+	{
+		codecCache = CodecCache.forRegistry( codecRegistry );
 		this.bsonTypeClassMap = bsonTypeClassMap;
+		template = templateSampleSize > 0 ? new DocumentTemplate( templateSampleSize, codecCache, bsonTypeClassMap ) : null;
 	}
 
 	//
@@ -70,28 +100,72 @@ public class ScriptObjectCodec implements Codec
 		{
 			Object value = scriptObject.get( key );
 			writer.writeName( key );
-			BsonUtil.writeChild( value, writer, encoderContext, codecRegistry );
+			NashornBsonUtil.writeChild( value, writer, encoderContext, codecCache );
 		}
 		writer.writeEndDocument();
 	}
 
 	public Object decode( BsonReader reader, DecoderContext decoderContext )
 	{
-		ScriptObject scriptObject = Global.newEmptyInstance();
+		ScriptObjectShape shape = rootShape;
+		Object[] values = new Object[INITIAL_CAPACITY];
+		List<Object> indexed = null;
+		DocumentTemplate.Reader templateReader = template != null ? template.newReader( reader ) : null;
+
+		boolean isDBRef = false;
+		int count = 0;
 
 		reader.readStartDocument();
-		while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
+		String key;
+		while( ( key = templateReader != null ? templateReader.readName() : BsonUtil.readName( reader ) ) != null )
 		{
-			String key = reader.readName();
-			Object value = BsonUtil.read( reader, decoderContext, codecRegistry, bsonTypeClassMap );
-			scriptObject.put( key, value, false );
+			// A DBRef's first field is always "$ref"
+			if( ( count++ == 0 ) && key.equals( "$ref" ) )
+				isDBRef = true;
+
+			Codec<Object> codec = templateReader != null ? templateReader.getCodec() : null;
+			Object value = codec != null ? codec.decode( reader, decoderContext ) : BsonUtil.read( reader, decoderContext, codecCache, bsonTypeClassMap );
+
+			if( ArrayIndex.isValidArrayIndex( ArrayIndex.getArrayIndex( key ) ) )
+			{
+				// Array index keys are not properties, but go into the array
+				// data, which we will let Nashorn handle
+				if( indexed == null )
+					indexed = new ArrayList<Object>();
+				indexed.add( key );
+				indexed.add( value );
+				continue;
+			}
+
+			ScriptObjectShape next = shape.next( key );
+			if( next != null )
+			{
+				shape = next;
+				int slot = shape.size() - 1;
+				if( slot == values.length )
+					values = Arrays.copyOf( values, slot * 2 );
+				values[slot] = value;
+			}
+			else
+				// Duplicate key (the last value wins)
+				values[shape.getMap().findProperty( key ).getSlot()] = value;
 		}
 		reader.readEndDocument();
 
+		int size = shape.size();
+		ScriptObject scriptObject = new JO( shape.getMap(), null, size == values.length ? values : Arrays.copyOf( values, size ) );
+		scriptObject.setInitialProto( Global.objectPrototype() );
+		if( indexed != null )
+			for( int i = 0, length = indexed.size(); i < length; i += 2 )
+				scriptObject.put( indexed.get( i ), indexed.get( i + 1 ), false );
+
 		// The driver does not support decoding DBRef, so we'll do it here
-		Object dbRef = new DBRefTransformer().transform( scriptObject, null );
-		if( dbRef != null )
-			return dbRef;
+		if( isDBRef )
+		{
+			Object dbRef = dbRefTransformer.transform( scriptObject, null );
+			if( dbRef != null )
+				return dbRef;
+		}
 
 		return scriptObject;
 	}
@@ -99,7 +173,15 @@ public class ScriptObjectCodec implements Codec
 	// //////////////////////////////////////////////////////////////////////////
 	// Private
 
-	private final CodecRegistry codecRegistry;
+	private final CodecCache codecCache;
+
+	private static final int INITIAL_CAPACITY = 16;
 
 	private final BsonTypeClassMap bsonTypeClassMap;
+
+	private final DocumentTemplate template;
+
+	private final ScriptObjectShape rootShape = ScriptObjectShape.newRoot();
+
+	private final DBRefTransformer dbRefTransformer = new DBRefTransformer();
 }
@@ -16,9 +16,8 @@ import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
-import org.bson.codecs.configuration.CodecConfigurationException;
 import org.bson.codecs.configuration.CodecRegistry;
-import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
 
 import jdk.nashorn.api.scripting.ScriptObjectMirror;
 import jdk.nashorn.internal.runtime.Context;
@@ -42,7 +41,7 @@ public class ScriptObjectMirrorCodec implements Codec<ScriptObjectMirror>
 	 */
 	public ScriptObjectMirrorCodec( CodecRegistry codecRegistry )
 	{
-		this.codecRegistry = codecRegistry;
+		codecCache = CodecCache.forRegistry( codecRegistry );
 	}
 
 	//
@@ -54,21 +53,13 @@ public class ScriptObjectMirrorCodec implements Codec<ScriptObjectMirror>
 		return ScriptObjectMirror.class;
 	}
 
-	@SuppressWarnings("unchecked")
 	public void encode( BsonWriter writer, ScriptObjectMirror scriptObjectMirror, EncoderContext encoderContext )
 	{
 		Object wrapped = ScriptObjectMirror.unwrap( scriptObjectMirror, Context.getGlobal() );
 		if( !( wrapped instanceof ScriptObjectMirror ) )
 		{
 			// Attempt to encode the wrapped object
-			Codec<Object> codec = null;
-			try
-			{
-				codec = (Codec<Object>) codecRegistry.get( wrapped.getClass() );
-			}
-			catch( CodecConfigurationException x )
-			{
-			}
+			Codec<Object> codec = codecCache.get( wrapped.getClass() );
 			if( codec != null )
 			{
 				codec.encode( writer, wrapped, encoderContext );
@@ -82,7 +73,7 @@ public class ScriptObjectMirrorCodec implements Codec<ScriptObjectMirror>
 			for( int i = 0, length = scriptObjectMirror.size(); i < length; i++ )
 			{
 				Object item = scriptObjectMirror.getSlot( i );
-				BsonUtil.writeChild( item, writer, encoderContext, codecRegistry );
+				NashornBsonUtil.writeChild( item, writer, encoderContext, codecCache );
 			}
 			writer.writeEndArray();
 		}
@@ -93,7 +84,7 @@ public class ScriptObjectMirrorCodec implements Codec<ScriptObjectMirror>
 			{
 				Object value = scriptObjectMirror.get( key );
 				writer.writeName( key );
-				BsonUtil.writeChild( value, writer, encoderContext, codecRegistry );
+				NashornBsonUtil.writeChild( value, writer, encoderContext, codecCache );
 			}
 			writer.writeEndDocument();
 		}
@@ -107,5 +98,5 @@ public class ScriptObjectMirrorCodec implements Codec<ScriptObjectMirror>
 	// //////////////////////////////////////////////////////////////////////////
 	// Private
 
-	private final CodecRegistry codecRegistry;
+	private final CodecCache codecCache;
 }
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.nashorn;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.nashorn.internal.runtime.PropertyMap;
+import jdk.nashorn.internal.runtime.SpillProperty;
+import jdk.nashorn.internal.scripts.JO;
+
+/**
+ * A learned shape for decoded Nashorn objects: a property map of spill
+ * properties, and the shapes learned from it by adding one more field name.
+ * <p>
+ * Documents with the same field names in the same order end up with the same
+ * shape, and thus share a single property map, so that call sites accessing
+ * their properties stay monomorphic. Walking a learned shape costs a single
+ * map lookup per field, without allocating properties or contending on
+ * Nashorn's synchronized property map transitions.
+ * <p>
+ * The number of shapes learned from a root is bounded. Beyond that, shapes
+ * are still created, but not remembered.
+ *
+ * @author Tal Liron
+ */
+class ScriptObjectShape
+{
+	//
+	// Construction
+	//
+
+	/**
+	 * Creates a root shape, with no properties.
+	 *
+	 * @return The root shape
+	 */
+	public static ScriptObjectShape newRoot()
+	{
+		return new ScriptObjectShape( JO.getInitialMap(), new AtomicInteger() );
+	}
+
+	//
+	// Attributes
+	//
+
+	/**
+	 * The property map.
+	 *
+	 * @return The property map
+	 */
+	public PropertyMap getMap()
+	{
+		return map;
+	}
+
+	/**
+	 * The number of properties, which is also the length of the spill array.
+	 *
+	 * @return The number of properties
+	 */
+	public int size()
+	{
+		return map.size();
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * The shape with one more property.
+	 *
+	 * @param key
+	 *        The property key
+	 * @return The shape or null if the key is already a property
+	 */
+	public ScriptObjectShape next( String key )
+	{
+		ScriptObjectShape next = children.get( key );
+		if( next == null )
+		{
+			if( map.findProperty( key ) != null )
+				return null;
+
+			next = new ScriptObjectShape( map.addProperty( new SpillProperty( key, 0, map.size(), Object.class ) ), count );
+			if( count.get() < MAX_SHAPES )
+			{
+				ScriptObjectShape existing = children.putIfAbsent( key, next );
+				if( existing != null )
+					next = existing;
+				else
+					count.incrementAndGet();
+			}
+		}
+		return next;
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final int MAX_SHAPES = 4096;
+
+	private final PropertyMap map;
+
+	/**
+	 * Number of shapes learned from our root.
+	 */
+	private final AtomicInteger count;
+
+	private final ConcurrentMap<String, ScriptObjectShape> children = new ConcurrentHashMap<String, ScriptObjectShape>();
+
+	private ScriptObjectShape( PropertyMap map, AtomicInteger count )
+	{
+		this.map = map;
+		this.count = count;
+	}
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.rhino;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.DecoderContext;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.LazyBsonDecoder;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.NativeObject;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.TopLevel;
+
+/**
+ * A Rhino object backed by a raw BSON document, which decodes its fields only
+ * when they are first accessed. Embedded documents are lazy, too.
+ * <p>
+ * Use this class as the document class of a MongoDB collection in order to
+ * decode its documents lazily. Otherwise it behaves like a regular JavaScript
+ * object, and can be modified. If none of its fields have been accessed it is
+ * encoded by copying the raw BSON.
+ *
+ * @author Tal Liron
+ */
+public class LazyScriptable extends NativeObject
+{
+	//
+	// Attributes
+	//
+
+	/**
+	 * Whether the raw BSON has not been touched yet.
+	 *
+	 * @return True if untouched
+	 */
+	public boolean isRaw()
+	{
+		return !touched;
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * Writes the raw BSON if it has not been touched yet.
+	 *
+	 * @param writer
+	 *        The BSON writer
+	 * @return True if written
+	 */
+	public boolean pipe( BsonWriter writer )
+	{
+		if( !isRaw() )
+			return false;
+		decoder.pipe( writer );
+		return true;
+	}
+
+	//
+	// ScriptableObject
+	//
+
+	@Override
+	public Object get( String name, Scriptable start )
+	{
+		decode( name );
+		return super.get( name, start );
+	}
+
+	@Override
+	public boolean has( String name, Scriptable start )
+	{
+		if( super.has( name, start ) )
+			return true;
+		if( undecoded != null )
+			return false;
+		if( decoder.find( name ) != -1 )
+			return true;
+		// Remember the miss
+		index();
+		return false;
+	}
+
+	@Override
+	public void put( String name, Scriptable start, Object value )
+	{
+		index();
+		touched = true;
+		if( start == this )
+			undecoded.remove( name );
+		super.put( name, start, value );
+	}
+
+	@Override
+	public void delete( String name )
+	{
+		index();
+		touched = true;
+		undecoded.remove( name );
+		super.delete( name );
+	}
+
+	@Override
+	public Object[] getIds()
+	{
+		index();
+		return super.getIds();
+	}
+
+	@Override
+	public Object[] getAllIds()
+	{
+		index();
+		return super.getAllIds();
+	}
+
+	@Override
+	protected ScriptableObject getOwnPropertyDescriptor( Context context, Object id )
+	{
+		if( id instanceof CharSequence )
+			decode( id.toString() );
+		return super.getOwnPropertyDescriptor( context, id );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Placeholder for field values that have not been decoded yet.
+	 */
+	private static final Object UNDECODED = new Object();
+
+	private final Decoder decoder;
+
+	/**
+	 * Field names mapped to their indexes in the raw BSON, for fields that have
+	 * not been decoded yet. Null until indexed.
+	 */
+	private transient Map<String, Integer> undecoded;
+
+	private boolean touched;
+
+	/**
+	 * Decodes Rhino values.
+	 */
+	static class Decoder extends LazyBsonDecoder
+	{
+		public Decoder( byte[] bytes, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap, DecoderContext decoderContext, Scriptable scope )
+		{
+			super( bytes, codecCache, bsonTypeClassMap, decoderContext );
+			this.scope = scope;
+		}
+
+		private Decoder( Decoder parent, int offset, int length )
+		{
+			super( parent, offset, length );
+			scope = parent.scope;
+		}
+
+		@Override
+		protected Object newDocument( int offset, int length )
+		{
+			return new LazyScriptable( new Decoder( this, offset, length ) );
+		}
+
+		@Override
+		protected Object newArray( Object[] items )
+		{
+			// The native array will use our Java array as is; like the
+			// constructor, this does not require a current context, because
+			// fields may be accessed on any thread
+			NativeArray array = new NativeArray( items );
+			ScriptRuntime.setBuiltinProtoAndParent( array, scope, TopLevel.Builtins.Array );
+			return array;
+		}
+
+		private final Scriptable scope;
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param decoder
+	 *        The decoder
+	 */
+	LazyScriptable( Decoder decoder )
+	{
+		this.decoder = decoder;
+		ScriptRuntime.setBuiltinProtoAndParent( this, decoder.scope, TopLevel.Builtins.Object );
+	}
+
+	/**
+	 * Creates slots for all fields in document order, so that enumeration
+	 * order is that of the document, with placeholders as values for fields
+	 * that have not been decoded yet. Indexing does not by itself touch the
+	 * raw BSON.
+	 */
+	private void index()
+	{
+		if( undecoded != null )
+			return;
+		int count = decoder.getCount();
+		undecoded = new HashMap<String, Integer>( count * 2 );
+		for( int i = 0; i < count; i++ )
+		{
+			String name = decoder.getName( i );
+			if( super.has( name, this ) )
+			{
+				// Decoded before indexing, so move it to its place
+				Object value = super.get( name, this );
+				super.delete( name );
+				super.put( name, this, value );
+			}
+			else
+			{
+				super.put( name, this, UNDECODED );
+				undecoded.put( name, i );
+			}
+		}
+	}
+
+	private void decode( String name )
+	{
+		if( undecoded == null )
+		{
+			// Before indexing we look up single fields without decoding any
+			// other field names, and add them in access order
+			if( !super.has( name, this ) )
+			{
+				int index = decoder.find( name );
+				if( index != -1 )
+				{
+					touched = true;
+					super.put( name, this, decoder.decode( index ) );
+				}
+				else
+					// A miss (such as a prototype lookup) scanned all field
+					// names, so we index them in order to not scan again
+					index();
+			}
+		}
+		else if( !undecoded.isEmpty() )
+		{
+			Integer index = undecoded.remove( name );
+			if( index != null )
+			{
+				touched = true;
+				super.put( name, this, decoder.decode( index ) );
+			}
+		}
+	}
+}
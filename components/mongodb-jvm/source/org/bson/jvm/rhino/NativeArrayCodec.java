@@ -11,9 +11,6 @@
 
 package org.bson.jvm.rhino;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.bson.BsonReader;
 import org.bson.BsonType;
 import org.bson.BsonWriter;
@@ -22,7 +19,7 @@ import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
-import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.NativeArray;
 import org.mozilla.javascript.ScriptRuntime;
@@ -33,7 +30,7 @@ import org.mozilla.javascript.Scriptable;
  * 
  * @author Tal Liron
  */
-public class NativeArrayCodec implements Codec<NativeArray>
+public class NativeArrayCodec implements Codec<NativeArray>, RhinoDecoder
 {
 	//
 	// Construction
@@ -49,7 +46,7 @@ public class NativeArrayCodec implements Codec<NativeArray>
 	 */
 	public NativeArrayCodec( CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap )
 	{
-		this.codecRegistry = codecRegistry;
+		codecCache = CodecCache.forRegistry( codecRegistry );
 		this.bsonTypeClassMap = bsonTypeClassMap;
 	}
 
@@ -68,37 +65,33 @@ public class NativeArrayCodec implements Codec<NativeArray>
 		for( int i = 0, length = (int) nativeArray.getLength(); i < length; i++ )
 		{
 			Object value = nativeArray.get( i );
-			BsonUtil.writeChild( value, writer, encoderContext, codecRegistry );
+			RhinoBsonUtil.writeChild( value, writer, encoderContext, codecCache );
 		}
 		writer.writeEndArray();
 	}
 
 	public NativeArray decode( BsonReader reader, DecoderContext decoderContext )
 	{
-		List<Object> list = new ArrayList<Object>();
+		Context context = Context.getCurrentContext();
+		return decode( reader, decoderContext, context, ScriptRuntime.getTopCallScope( context ) );
+	}
 
-		reader.readStartArray();
-		while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
-		{
-			Object item = BsonUtil.read( reader, decoderContext, codecRegistry, bsonTypeClassMap );
-			list.add( item );
-		}
-		reader.readEndArray();
+	//
+	// RhinoDecoder
+	//
 
-		Context context = Context.getCurrentContext();
-		Scriptable scope = ScriptRuntime.getTopCallScope( context );
-		NativeArray nativeArray = (NativeArray) context.newArray( scope, list.size() );
+	public NativeArray decode( BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope )
+	{
+		Object[] items = RhinoBsonUtil.readArray( reader, decoderContext, codecCache, bsonTypeClassMap, context, scope );
 
-		int index = 0;
-		for( Object item : list )
-			nativeArray.put( index++, nativeArray, item );
-		return nativeArray;
+		// The native array will use our Java array as is
+		return (NativeArray) context.newArray( scope, items );
 	}
 
 	// //////////////////////////////////////////////////////////////////////////
 	// Private
 
-	private final CodecRegistry codecRegistry;
+	private final CodecCache codecCache;
 
 	private final BsonTypeClassMap bsonTypeClassMap;
 }
@@ -11,6 +11,9 @@
 
 package org.bson.jvm.rhino;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+
 import org.bson.BsonReader;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
@@ -23,11 +26,15 @@ import org.mozilla.javascript.ScriptableObject;
 
 /**
  * A BSON codec for Rhino's NativeDate (the class is private in Rhino).
+ * <p>
+ * Where reflection is allowed, the date's internal time value is read and
+ * created directly, without calling its "getTime" method or its constructor
+ * in JavaScript. Otherwise we fall back to doing just that.
  * 
  * @author Tal Liron
  */
 @SuppressWarnings("rawtypes")
-public class NativeDateCodec implements Codec
+public class NativeDateCodec implements Codec, RhinoDecoder
 {
 	//
 	// Codec
@@ -42,21 +49,123 @@ public class NativeDateCodec implements Codec
 
 	public void encode( BsonWriter writer, Object object, EncoderContext encoderContext )
 	{
-		Scriptable nativeDate = (Scriptable) object;
-
-		Object time = ScriptableObject.callMethod( nativeDate, "getTime", null );
-		writer.writeDateTime( ( (Number) time ).longValue() );
+		writer.writeDateTime( getTime( (Scriptable) object ) );
 	}
 
 	public Object decode( BsonReader reader, DecoderContext decoderContext )
+	{
+		Context context = Context.getCurrentContext();
+		return decode( reader, decoderContext, context, ScriptRuntime.getTopCallScope( context ) );
+	}
+
+	//
+	// RhinoDecoder
+	//
+
+	public Object decode( BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope )
 	{
 		long time = reader.readDateTime();
 
-		Context context = Context.getCurrentContext();
-		Scriptable scope = ScriptRuntime.getTopCallScope( context );
+		return newDate( time, context, scope );
+	}
+
+	//
+	// Operations
+	//
+
+	/**
+	 * The time value of a Rhino NativeDate.
+	 * 
+	 * @param nativeDate
+	 *        The NativeDate
+	 * @return The time in milliseconds since the epoch
+	 */
+	public static long getTime( Scriptable nativeDate )
+	{
+		// Other Scriptables with the "Date" class name are asked for their time
+		if( ( DATE_FIELD != null ) && DATE_FIELD.getDeclaringClass().isInstance( nativeDate ) )
+		{
+			try
+			{
+				return (long) DATE_FIELD.getDouble( nativeDate );
+			}
+			catch( IllegalAccessException x )
+			{
+			}
+		}
+
+		Object time = ScriptableObject.callMethod( nativeDate, "getTime", null );
+		return ( (Number) time ).longValue();
+	}
+
+	/**
+	 * Creates a Rhino NativeDate.
+	 * 
+	 * @param time
+	 *        The time in milliseconds since the epoch
+	 * @param context
+	 *        The Rhino context
+	 * @param scope
+	 *        The scope
+	 * @return The NativeDate
+	 */
+	public static Scriptable newDate( long time, Context context, Scriptable scope )
+	{
+		if( DATE_CONSTRUCTOR != null )
+		{
+			try
+			{
+				Scriptable nativeDate = DATE_CONSTRUCTOR.newInstance();
+				DATE_FIELD.setDouble( nativeDate, time );
+				nativeDate.setPrototype( ScriptableObject.getClassPrototype( scope, "Date" ) );
+				nativeDate.setParentScope( ScriptableObject.getTopLevelScope( scope ) );
+				return nativeDate;
+			}
+			catch( ReflectiveOperationException x )
+			{
+			}
+		}
+
 		return context.newObject( scope, "Date", new Object[]
 		{
 			time
 		} );
 	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	/**
+	 * NativeDate's private time value field, or null if not accessible.
+	 */
+	private static final Field DATE_FIELD;
+
+	/**
+	 * NativeDate's private constructor, or null if not accessible.
+	 */
+	private static final Constructor<? extends Scriptable> DATE_CONSTRUCTOR;
+
+	static
+	{
+		Field dateField = null;
+		Constructor<? extends Scriptable> dateConstructor = null;
+		try
+		{
+			Class<? extends Scriptable> nativeDateClass = Class.forName( "org.mozilla.javascript.NativeDate" ).asSubclass( Scriptable.class );
+			dateField = nativeDateClass.getDeclaredField( "date" );
+			dateField.setAccessible( true );
+			dateConstructor = nativeDateClass.getDeclaredConstructor();
+			dateConstructor.setAccessible( true );
+		}
+		catch( ReflectiveOperationException x )
+		{
+		}
+		catch( RuntimeException x )
+		{
+			// SecurityException, or InaccessibleObjectException in newer
+			// JVMs
+		}
+		DATE_FIELD = dateField;
+		DATE_CONSTRUCTOR = dateField != null ? dateConstructor : null;
+	}
 }
@@ -26,7 +26,7 @@ import org.mozilla.javascript.Scriptable;
  * @author Tal Liron
  */
 @SuppressWarnings("rawtypes")
-public class NativeNumberCodec implements Codec
+public class NativeNumberCodec implements Codec, RhinoDecoder
 {
 	//
 	// Codec
@@ -47,11 +47,19 @@ public class NativeNumberCodec implements Codec
 	}
 
 	public Object decode( BsonReader reader, DecoderContext decoderContext )
+	{
+		Context context = Context.getCurrentContext();
+		return decode( reader, decoderContext, context, ScriptRuntime.getTopCallScope( context ) );
+	}
+
+	//
+	// RhinoDecoder
+	//
+
+	public Object decode( BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope )
 	{
 		double number = reader.readDouble();
 
-		Context context = Context.getCurrentContext();
-		Scriptable scope = ScriptRuntime.getTopCallScope( context );
 		return context.newObject( scope, "Number", new Object[]
 		{
 			number
@@ -11,13 +11,18 @@
 
 package org.bson.jvm.rhino;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.bson.BsonReader;
 import org.bson.BsonRegularExpression;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
+import org.bson.jvm.internal.BsonUtil;
 import org.mozilla.javascript.Context;
+import org.mozilla.javascript.RegExpProxy;
 import org.mozilla.javascript.ScriptRuntime;
 import org.mozilla.javascript.Scriptable;
 
@@ -27,7 +32,7 @@ import org.mozilla.javascript.Scriptable;
  * @author Tal Liron
  */
 @SuppressWarnings("rawtypes")
-public class NativeRegExpCodec implements Codec
+public class NativeRegExpCodec implements Codec, RhinoDecoder
 {
 	//
 	// Codec
@@ -49,29 +54,75 @@ public class NativeRegExpCodec implements Codec
 		Object isIgnoreCase = nativeRegExp.get( "ignoreCase", nativeRegExp );
 		Object isMultiLine = nativeRegExp.get( "multiline", nativeRegExp );
 
-		String options = "";
-		if( ( ( isGlobal instanceof Boolean ) && ( ( (Boolean) isGlobal ).booleanValue() ) )
-			|| ( ( isGlobal instanceof Scriptable ) && ( (Boolean) ( (Scriptable) isGlobal ).getDefaultValue( Boolean.class ) ).booleanValue() ) )
-			options += "g";
-		if( ( ( isIgnoreCase instanceof Boolean ) && ( ( (Boolean) isIgnoreCase ).booleanValue() ) )
-			|| ( ( isIgnoreCase instanceof Scriptable ) && ( (Boolean) ( (Scriptable) isIgnoreCase ).getDefaultValue( Boolean.class ) ).booleanValue() ) )
-			options += "i";
-		if( ( ( isMultiLine instanceof Boolean ) && ( ( (Boolean) isMultiLine ).booleanValue() ) )
-			|| ( ( isMultiLine instanceof Scriptable ) && ( (Boolean) ( (Scriptable) isMultiLine ).getDefaultValue( Boolean.class ) ).booleanValue() ) )
-			options += "m";
+		String options = BsonUtil.getRegularExpressionOptions( isTrue( isGlobal ), isTrue( isIgnoreCase ), isTrue( isMultiLine ) );
 
 		writer.writeRegularExpression( new BsonRegularExpression( source.toString(), options ) );
 	}
 
 	public Object decode( BsonReader reader, DecoderContext decoderContext )
+	{
+		Context context = Context.getCurrentContext();
+		return decode( reader, decoderContext, context, ScriptRuntime.getTopCallScope( context ) );
+	}
+
+	//
+	// RhinoDecoder
+	//
+
+	public Object decode( BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope )
 	{
 		BsonRegularExpression bsonRegularExpression = reader.readRegularExpression();
+		String pattern = bsonRegularExpression.getPattern();
+		String options = bsonRegularExpression.getOptions();
 
-		Context context = Context.getCurrentContext();
-		Scriptable scope = ScriptRuntime.getTopCallScope( context );
-		return context.newObject( scope, "RegExp", new Object[]
+		RegExpProxy regExpProxy = ScriptRuntime.checkRegExpProxy( context );
+
+		// Compiled regular expressions are immutable, so they can be shared by
+		// any number of RegExp objects
+		String key = options + '/' + pattern;
+		Object compiled;
+		synchronized( compiledCache )
+		{
+			compiled = compiledCache.get( key );
+		}
+		if( compiled == null )
 		{
-			bsonRegularExpression.getPattern(), bsonRegularExpression.getOptions()
-		} );
+			compiled = regExpProxy.compileRegExp( context, pattern, options );
+			synchronized( compiledCache )
+			{
+				compiledCache.put( key, compiled );
+			}
+		}
+
+		return regExpProxy.wrapRegExp( context, scope, compiled );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private static final int MAX_CACHED = 256;
+
+	/**
+	 * Least recently used compiled regular expressions, by options and
+	 * pattern.
+	 */
+	private final Map<String, Object> compiledCache = new LinkedHashMap<String, Object>( 16, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( Map.Entry<String, Object> eldest )
+		{
+			return size() > MAX_CACHED;
+		}
+	};
+
+	private static boolean isTrue( Object value )
+	{
+		if( value instanceof Boolean )
+			return ( (Boolean) value ).booleanValue();
+		else if( value instanceof Scriptable )
+			return ( (Boolean) ( (Scriptable) value ).getDefaultValue( Boolean.class ) ).booleanValue();
+		return false;
 	}
 }
@@ -26,7 +26,7 @@ import org.mozilla.javascript.Scriptable;
  * @author Tal Liron
  */
 @SuppressWarnings("rawtypes")
-public class NativeStringCodec implements Codec
+public class NativeStringCodec implements Codec, RhinoDecoder
 {
 	//
 	// Codec
@@ -45,11 +45,19 @@ public class NativeStringCodec implements Codec
 	}
 
 	public Object decode( BsonReader reader, DecoderContext decoderContext )
+	{
+		Context context = Context.getCurrentContext();
+		return decode( reader, decoderContext, context, ScriptRuntime.getTopCallScope( context ) );
+	}
+
+	//
+	// RhinoDecoder
+	//
+
+	public Object decode( BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope )
 	{
 		String string = reader.readString();
 
-		Context context = Context.getCurrentContext();
-		Scriptable scope = ScriptRuntime.getTopCallScope( context );
 		return context.newObject( scope, "String", new Object[]
 		{
 			string
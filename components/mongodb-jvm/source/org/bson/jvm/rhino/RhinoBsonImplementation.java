@@ -14,7 +14,9 @@ package org.bson.jvm.rhino;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.jvm.BsonImplementation;
+import org.mozilla.javascript.Context;
 import org.mozilla.javascript.NativeArray;
+import org.mozilla.javascript.ScriptRuntime;
 import org.mozilla.javascript.Scriptable;
 import org.mozilla.javascript.ScriptableObject;
 
@@ -47,15 +49,35 @@ public class RhinoBsonImplementation implements BsonImplementation
 		return Scriptable.class;
 	}
 
+	public Class<?> getLazyDocumentClass()
+	{
+		return LazyScriptable.class;
+	}
+
 	public CodecRegistry getCodecRegistry( CodecRegistry next )
 	{
-		return CodecRegistries.fromRegistries(
+		RhinoCodecProvider provider = new RhinoCodecProvider();
+		CodecRegistry codecRegistry = CodecRegistries.fromRegistries(
 			CodecRegistries.fromCodecs( new ConsStringCodec(), new NativeBooleanCodec(), new NativeDateCodec(), new NativeNumberCodec(), new NativeRegExpCodec(), new NativeStringCodec(), new UndefinedCodec() ),
-			CodecRegistries.fromProviders( new RhinoCodecProvider() ), next );
+			CodecRegistries.fromProviders( provider ), next );
+		provider.setCodecRegistry( codecRegistry );
+		return codecRegistry;
+	}
+
+	public CodecRegistry getTemplateCodecRegistry( CodecRegistry next, int sampleSize )
+	{
+		ScriptableCodec scriptableCodec = new ScriptableCodec( next, new RhinoCodecProvider().getBsonTypeClassMap(), sampleSize );
+		return CodecRegistries.fromRegistries( CodecRegistries.fromCodecs( scriptableCodec ), next );
 	}
 
 	public Object createString( String string )
 	{
 		return string;
 	}
+
+	public Object createArray( Object[] items )
+	{
+		Context context = Context.getCurrentContext();
+		return context.newArray( ScriptRuntime.getTopCallScope( context ), items );
+	}
 }
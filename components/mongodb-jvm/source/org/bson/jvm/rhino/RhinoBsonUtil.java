@@ -0,0 +1,155 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.rhino;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.BsonTypeClassMap;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.ItemDecoder;
+import org.mozilla.javascript.ConsString;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * Rhino-specific encoding and decoding utilities.
+ * 
+ * @author Tal Liron
+ */
+class RhinoBsonUtil
+{
+	/**
+	 * Encodes a value to a BSON writer. Rhino's native strings and undefined,
+	 * as well as Java primitives, are written directly, and other values are
+	 * delegated to
+	 * {@link BsonUtil#writeChild(Object, BsonWriter, EncoderContext, CodecCache)}.
+	 * 
+	 * @param value
+	 *        The value
+	 * @param writer
+	 *        The BSON writer
+	 * @param encoderContext
+	 *        The encoder context
+	 * @param codecCache
+	 *        The codec cache
+	 */
+	public static void writeChild( Object value, BsonWriter writer, EncoderContext encoderContext, CodecCache codecCache )
+	{
+		if( value instanceof ConsString )
+			writer.writeString( value.toString() );
+		else if( value instanceof Undefined )
+			writer.writeUndefined();
+		else
+			BsonUtil.writeChild( value, writer, encoderContext, codecCache );
+	}
+
+	/**
+	 * Decodes a value from a BSON reader with the appropriate codec. Like
+	 * {@link BsonUtil#read(BsonReader, DecoderContext, CodecCache, BsonTypeClassMap)}
+	 * , except that our codecs are given the already resolved Rhino context
+	 * and scope.
+	 * 
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @param context
+	 *        The Rhino context
+	 * @param scope
+	 *        The top call scope
+	 * @return The value
+	 */
+	public static Object read( BsonReader reader, DecoderContext decoderContext, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap, Context context, Scriptable scope )
+	{
+		BsonType type = reader.getCurrentBsonType();
+		if( type == BsonType.NULL )
+		{
+			// The BSON type class map has no class for null
+			reader.readNull();
+			return null;
+		}
+		return decode( BsonUtil.getCodec( type, codecCache, bsonTypeClassMap ), reader, decoderContext, context, scope );
+	}
+
+	/**
+	 * Decodes the items of a BSON array into a Java array of exactly the
+	 * array's length. Like
+	 * {@link BsonUtil#readArray(BsonReader, DecoderContext, CodecCache, BsonTypeClassMap)}
+	 * , except that our codecs are given the already resolved Rhino context
+	 * and scope.
+	 * 
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @param codecCache
+	 *        The codec cache
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @param context
+	 *        The Rhino context
+	 * @param scope
+	 *        The top call scope
+	 * @return The items
+	 */
+	public static Object[] readArray( BsonReader reader, DecoderContext decoderContext, CodecCache codecCache, BsonTypeClassMap bsonTypeClassMap, final Context context, final Scriptable scope )
+	{
+		return BsonUtil.readArray( reader, decoderContext, codecCache, bsonTypeClassMap, new ItemDecoder()
+		{
+			public Object decode( Codec<Object> codec, BsonReader reader, DecoderContext decoderContext )
+			{
+				return RhinoBsonUtil.decode( codec, reader, decoderContext, context, scope );
+			}
+		} );
+	}
+
+	/**
+	 * Decodes a value from a BSON reader with a codec. If it is one of our
+	 * codecs it is given the already resolved Rhino context and scope.
+	 * 
+	 * @param codec
+	 *        The codec
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @param context
+	 *        The Rhino context
+	 * @param scope
+	 *        The top call scope
+	 * @return The value
+	 */
+	public static Object decode( Codec<Object> codec, BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope )
+	{
+		if( codec instanceof RhinoDecoder )
+			return ( (RhinoDecoder) codec ).decode( reader, decoderContext, context, scope );
+		else
+			return codec.decode( reader, decoderContext );
+	}
+
+	// //////////////////////////////////////////////////////////////////////////
+	// Private
+
+	private RhinoBsonUtil()
+	{
+	}
+}
@@ -61,6 +61,44 @@ public class RhinoCodecProvider implements CodecProvider
 		bsonTypeClassMap = new BsonTypeClassMap( replacements );
 	}
 
+	//
+	// Attributes
+	//
+
+	/**
+	 * The BSON type class map used by our codecs.
+	 * 
+	 * @return The BSON type class map
+	 */
+	public BsonTypeClassMap getBsonTypeClassMap()
+	{
+		return bsonTypeClassMap;
+	}
+
+	/**
+	 * The codec registry that this provider is part of.
+	 * 
+	 * @return The codec registry or null if not set
+	 */
+	public CodecRegistry getCodecRegistry()
+	{
+		return codecRegistry;
+	}
+
+	/**
+	 * Sets the codec registry that this provider is part of. Our codecs then
+	 * look up the codecs of child values there, rather than in the per-class
+	 * registry that the driver passes to {@link #get(Class, CodecRegistry)},
+	 * so that they all share the same {@link org.bson.jvm.internal.CodecCache}.
+	 * 
+	 * @param codecRegistry
+	 *        The codec registry
+	 */
+	public void setCodecRegistry( CodecRegistry codecRegistry )
+	{
+		this.codecRegistry = codecRegistry;
+	}
+
 	//
 	// CodecProvider
 	//
@@ -69,28 +107,30 @@ public class RhinoCodecProvider implements CodecProvider
 	public <T> Codec<T> get( Class<T> clazz, CodecRegistry registry )
 	{
 		if( clazz == Document.class )
-			return (Codec<T>) new DocumentCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getDocumentCodec();
 		else if( clazz == DBObject.class )
-			return (Codec<T>) new DBObjectCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getDBObjectCodec();
 		else if( clazz == NativeArray.class )
-			return (Codec<T>) new NativeArrayCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getNativeArrayCodec();
+		else if( clazz == LazyScriptable.class )
+			return (Codec<T>) getCodecs( registry ).getLazyScriptableCodec();
 		else if( Wrapper.class.isAssignableFrom( clazz ) )
-			return (Codec<T>) new WrapperCodec( registry );
+			return (Codec<T>) getCodecs( registry ).getWrapperCodec();
 		// Handle private classes
 		String name = clazz.getCanonicalName();
 		if( name.equals( "org.mozilla.javascript.NativeBoolean" ) )
-			return new NativeBooleanCodec();
+			return nativeBooleanCodec;
 		else if( name.equals( "org.mozilla.javascript.NativeDate" ) )
-			return new NativeDateCodec();
+			return nativeDateCodec;
 		else if( name.equals( "org.mozilla.javascript.NativeNumber" ) )
-			return new NativeNumberCodec();
+			return nativeNumberCodec;
 		else if( name.equals( "org.mozilla.javascript.regexp.NativeRegExp" ) )
-			return new NativeRegExpCodec();
+			return nativeRegExpCodec;
 		else if( name.equals( "org.mozilla.javascript.NativeString" ) )
-			return new NativeStringCodec();
+			return nativeStringCodec;
 		// Make sure Scriptable is last
 		else if( Scriptable.class.isAssignableFrom( clazz ) )
-			return (Codec<T>) new ScriptableCodec( registry, bsonTypeClassMap );
+			return (Codec<T>) getCodecs( registry ).getScriptableCodec();
 		return null;
 	}
 
@@ -98,4 +138,115 @@ public class RhinoCodecProvider implements CodecProvider
 	// Private
 
 	private final BsonTypeClassMap bsonTypeClassMap;
+
+	private volatile CodecRegistry codecRegistry;
+
+	private final NativeBooleanCodec nativeBooleanCodec = new NativeBooleanCodec();
+
+	private final NativeDateCodec nativeDateCodec = new NativeDateCodec();
+
+	private final NativeNumberCodec nativeNumberCodec = new NativeNumberCodec();
+
+	private final NativeRegExpCodec nativeRegExpCodec = new NativeRegExpCodec();
+
+	private final NativeStringCodec nativeStringCodec = new NativeStringCodec();
+
+	private volatile Codecs codecs;
+
+	/**
+	 * The codecs that depend on the codec registry. Each is created when
+	 * first requested, in a benign race: at worst it is created more than
+	 * once.
+	 */
+	private class Codecs
+	{
+		public Codecs( CodecRegistry registry )
+		{
+			this.registry = registry;
+		}
+
+		public DocumentCodec getDocumentCodec()
+		{
+			DocumentCodec codec = documentCodec;
+			if( codec == null )
+				documentCodec = codec = new DocumentCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public DBObjectCodec getDBObjectCodec()
+		{
+			DBObjectCodec codec = dbObjectCodec;
+			if( codec == null )
+				dbObjectCodec = codec = new DBObjectCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public NativeArrayCodec getNativeArrayCodec()
+		{
+			NativeArrayCodec codec = nativeArrayCodec;
+			if( codec == null )
+				nativeArrayCodec = codec = new NativeArrayCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public WrapperCodec getWrapperCodec()
+		{
+			WrapperCodec codec = wrapperCodec;
+			if( codec == null )
+				wrapperCodec = codec = new WrapperCodec( registry );
+			return codec;
+		}
+
+		public ScriptableCodec getScriptableCodec()
+		{
+			ScriptableCodec codec = scriptableCodec;
+			if( codec == null )
+				scriptableCodec = codec = new ScriptableCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		public LazyScriptableCodec getLazyScriptableCodec()
+		{
+			LazyScriptableCodec codec = lazyScriptableCodec;
+			if( codec == null )
+				lazyScriptableCodec = codec = new LazyScriptableCodec( registry, bsonTypeClassMap );
+			return codec;
+		}
+
+		private final CodecRegistry registry;
+
+		private volatile DocumentCodec documentCodec;
+
+		private volatile DBObjectCodec dbObjectCodec;
+
+		private volatile NativeArrayCodec nativeArrayCodec;
+
+		private volatile WrapperCodec wrapperCodec;
+
+		private volatile ScriptableCodec scriptableCodec;
+
+		private volatile LazyScriptableCodec lazyScriptableCodec;
+	}
+
+	/**
+	 * Our codecs are created once for the registry we are part of. If it is
+	 * not set, the requested codec is created for the registry passed by the
+	 * driver, which differs per class (the driver caches the codecs it gets
+	 * from us).
+	 */
+	private Codecs getCodecs( CodecRegistry registry )
+	{
+		CodecRegistry codecRegistry = this.codecRegistry;
+		if( codecRegistry == null )
+			return new Codecs( registry );
+
+		Codecs codecs = this.codecs;
+		if( ( codecs == null ) || ( codecs.registry != codecRegistry ) )
+		{
+			// Benign race: at worst we create the codecs more than once
+			codecs = new Codecs( codecRegistry );
+			this.codecs = codecs;
+		}
+		return codecs;
+	}
 }
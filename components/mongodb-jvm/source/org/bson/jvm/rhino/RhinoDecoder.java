@@ -0,0 +1,44 @@
+/**
+ * Copyright 2010-2017 Three Crickets LLC.
+ * <p>
+ * The contents of this file are subject to the terms of the Apache License
+ * version 2.0: http://www.opensource.org/licenses/apache2.0.php
+ * <p>
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly from Three Crickets
+ * at http://threecrickets.com/
+ */
+
+package org.bson.jvm.rhino;
+
+import org.bson.BsonReader;
+import org.bson.codecs.DecoderContext;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * A Rhino codec that can decode with a Rhino context and scope that were
+ * already resolved by its caller. Nested values are decoded this way, so that
+ * the context and top call scope are looked up only once per top-level
+ * decode.
+ * 
+ * @author Tal Liron
+ * @see RhinoBsonUtil
+ */
+interface RhinoDecoder
+{
+	/**
+	 * Decodes a value.
+	 * 
+	 * @param reader
+	 *        The BSON reader
+	 * @param decoderContext
+	 *        The decoder context
+	 * @param context
+	 *        The Rhino context
+	 * @param scope
+	 *        The top call scope
+	 * @return The value
+	 */
+	public Object decode( BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope );
+}
@@ -12,7 +12,6 @@
 package org.bson.jvm.rhino;
 
 import org.bson.BsonReader;
-import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.BsonTypeClassMap;
 import org.bson.codecs.Codec;
@@ -20,6 +19,8 @@ import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.jvm.internal.BsonUtil;
+import org.bson.jvm.internal.CodecCache;
+import org.bson.jvm.internal.DocumentTemplate;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ScriptRuntime;
 import org.mozilla.javascript.Scriptable;
@@ -35,7 +36,7 @@ import com.mongodb.jvm.json.rhino.DBRefTransformer;
  * @author Tal Liron
  */
 @SuppressWarnings("rawtypes")
-public class ScriptableCodec implements Codec
+public class ScriptableCodec implements Codec, RhinoDecoder
 {
 	//
 	// Construction
@@ -51,8 +52,25 @@ public class ScriptableCodec implements Codec
 	 */
 	public ScriptableCodec( CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap )
 	{
-		this.codecRegistry = codecRegistry;
+		this( codecRegistry, bsonTypeClassMap, 0 );
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param codecRegistry
+	 *        The codec registry
+	 * @param bsonTypeClassMap
+	 *        The BSON type class map
+	 * @param templateSampleSize
+	 *        If greater than zero, documents will be decoded with a
+	 *        {@link DocumentTemplate} learned from this many documents
+	 */
+	public ScriptableCodec( CodecRegistry codecRegistry, BsonTypeClassMap bsonTypeClassMap, int templateSampleSize )
+	{
+		codecCache = CodecCache.forRegistry( codecRegistry );
 		this.bsonTypeClassMap = bsonTypeClassMap;
+		template = templateSampleSize > 0 ? new DocumentTemplate( templateSampleSize, codecCache, bsonTypeClassMap ) : null;
 	}
 
 	//
@@ -71,12 +89,12 @@ public class ScriptableCodec implements Codec
 		String className = scriptable.getClassName();
 		if( className.equals( "Date" ) )
 		{
-			new NativeDateCodec().encode( writer, scriptable, encoderContext );
+			nativeDateCodec.encode( writer, scriptable, encoderContext );
 			return;
 		}
 		else if( className.equals( "RegExp" ) )
 		{
-			new NativeRegExpCodec().encode( writer, scriptable, encoderContext );
+			nativeRegExpCodec.encode( writer, scriptable, encoderContext );
 			return;
 		}
 
@@ -87,7 +105,7 @@ public class ScriptableCodec implements Codec
 			String key = id.toString();
 			Object value = ScriptableObject.getProperty( scriptable, key );
 			writer.writeName( key );
-			BsonUtil.writeChild( value, writer, encoderContext, codecRegistry );
+			RhinoBsonUtil.writeChild( value, writer, encoderContext, codecCache );
 		}
 		writer.writeEndDocument();
 	}
@@ -95,22 +113,42 @@ public class ScriptableCodec implements Codec
 	public Object decode( BsonReader reader, DecoderContext decoderContext )
 	{
 		Context context = Context.getCurrentContext();
-		Scriptable scope = ScriptRuntime.getTopCallScope( context );
+		return decode( reader, decoderContext, context, ScriptRuntime.getTopCallScope( context ) );
+	}
+
+	//
+	// RhinoDecoder
+	//
+
+	public Object decode( BsonReader reader, DecoderContext decoderContext, Context context, Scriptable scope )
+	{
 		Scriptable scriptable = context.newObject( scope );
+		DocumentTemplate.Reader templateReader = template != null ? template.newReader( reader ) : null;
+
+		boolean isDBRef = false;
+		int count = 0;
 
 		reader.readStartDocument();
-		while( reader.readBsonType() != BsonType.END_OF_DOCUMENT )
+		String key;
+		while( ( key = templateReader != null ? templateReader.readName() : BsonUtil.readName( reader ) ) != null )
 		{
-			String key = reader.readName();
-			Object value = BsonUtil.read( reader, decoderContext, codecRegistry, bsonTypeClassMap );
+			// A DBRef's first field is always "$ref"
+			if( ( count++ == 0 ) && key.equals( "$ref" ) )
+				isDBRef = true;
+
+			Codec<Object> codec = templateReader != null ? templateReader.getCodec() : null;
+			Object value = codec != null ? RhinoBsonUtil.decode( codec, reader, decoderContext, context, scope ) : RhinoBsonUtil.read( reader, decoderContext, codecCache, bsonTypeClassMap, context, scope );
 			scriptable.put( key, scriptable, value );
 		}
 		reader.readEndDocument();
 
 		// The driver does not support decoding DBRef, so we'll do it here
-		Object dbRef = new DBRefTransformer().transform( scriptable, null );
-		if( dbRef != null )
-			return dbRef;
+		if( isDBRef )
+		{
+			Object dbRef = dbRefTransformer.transform( scriptable, null );
+			if( dbRef != null )
+				return dbRef;
+		}
 
 		return scriptable;
 	}
@@ -118,7 +156,15 @@ public class ScriptableCodec implements Codec
 	// //////////////////////////////////////////////////////////////////////////
 	// Private
 
-	private final CodecRegistry codecRegistry;
+	private final CodecCache codecCache;
 
 	private final BsonTypeClassMap bsonTypeClassMap;
+
+	private final DocumentTemplate template;
+
+	private final NativeDateCodec nativeDateCodec = new NativeDateCodec();
+
+	private final NativeRegExpCodec nativeRegExpCodec = new NativeRegExpCodec();
+
+	private final DBRefTransformer dbRefTransformer = new DBRefTransformer();
 }
@@ -16,7 +16,9 @@ import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecConfigurationException;
 import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.jvm.internal.CodecCache;
 import org.mozilla.javascript.Wrapper;
 
 /**
@@ -39,7 +41,7 @@ public class WrapperCodec implements Codec<Wrapper>
 	 */
 	public WrapperCodec( CodecRegistry codecRegistry )
 	{
-		this.codecRegistry = codecRegistry;
+		codecCache = CodecCache.forRegistry( codecRegistry );
 	}
 
 	//
@@ -55,8 +57,9 @@ public class WrapperCodec implements Codec<Wrapper>
 	{
 		Object wrapped = wrapper.unwrap();
 
-		@SuppressWarnings("unchecked")
-		Codec<Object> codec = (Codec<Object>) codecRegistry.get( wrapped.getClass() );
+		Codec<Object> codec = codecCache.get( wrapped.getClass() );
+		if( codec == null )
+			throw new CodecConfigurationException( "Can't find a codec for " + wrapped.getClass() );
 		codec.encode( writer, wrapped, encoderContext );
 	}
 
@@ -68,5 +71,5 @@ public class WrapperCodec implements Codec<Wrapper>
 	// //////////////////////////////////////////////////////////////////////////
 	// Private
 
-	private final CodecRegistry codecRegistry;
+	private final CodecCache codecCache;
 }
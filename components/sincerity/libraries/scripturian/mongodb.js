@@ -114,6 +114,24 @@ var MongoClient = function(uri, options) {
 		}
 	}
 	
+	/**
+	 * The async driver client paired with this client. It is created on first use with the
+	 * same servers, credentials and options, has its own connection pool, and is closed
+	 * together with this client.
+	 *
+	 * @returns {<a href="http://api.mongodb.org/java/current/index.html?com/mongodb/async/client/MongoClient.html">com.mongodb.async.client.MongoClient</a>}
+	 * @throws {MongoError}
+	 * @see MongoCollection#async
+	 */
+	this.asyncClient = function() {
+		try {
+			return com.mongodb.jvm.async.MongoAsyncClients.get(this.client)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
 	//
 	// Operations
 	//
@@ -123,6 +141,7 @@ var MongoClient = function(uri, options) {
 	 */
 	this.close = function() {
 		try {
+			com.mongodb.jvm.async.MongoAsyncClients.close(this.client)
 			this.client.close()
 		}
 		catch (x if !(x instanceof MongoError)) {
@@ -668,6 +687,108 @@ var MongoDatabase = function(uri /* or database */, options /* or client */) {
 		}
 	}
 	
+	//
+	// Parallel queries
+	//
+
+	/**
+	 * Runs several independent queries concurrently, using the async driver (see
+	 * {@link MongoCollection#async}), and waits for all of them. Total latency is thus that of
+	 * the slowest query rather than the sum of all of them.
+	 * <p>
+	 * Each operation is either an object describing a query on a collection of this database,
+	 * or a function that is called with this database and returns a {@link MongoFuture}:
+	 * <p>
+	 * <pre>
+	 * var results = db.parallel({
+	 *   user: {collection: 'users', operation: 'findOne', filter: {name: 'tal'}},
+	 *   recent: {collection: 'posts', operation: 'find', options: {sort: {date: -1}, limit: 10}},
+	 *   total: {collection: 'posts', operation: 'count'},
+	 *   tags: {collection: 'posts', operation: 'aggregate', pipeline: [{$unwind: '$tags'}, {$group: {_id: '$tags'}}]},
+	 *   other: function(db) { return db.collection('other').async().findOne() }
+	 * }, {timeout: 2000})
+	 * if (results.user instanceof MongoError) { ... }
+	 * </pre>
+	 * <p>
+	 * An operation that fails or times out does not affect the others: its result is the
+	 * {@link MongoError}.
+	 *
+	 * @param {Object|Array} operations Operations by name, or an array of operations
+	 * @param {Object} [options]
+	 * @param {Number} [options.timeout] Timeout in milliseconds for all operations together,
+	 *  waits indefinitely if not provided
+	 * @param {Number} [options.concurrency=MongoDatabase.PARALLEL_CONCURRENCY] Maximum number
+	 *  of operations in progress at once
+	 * @returns {Object|Array} The results by the same names, or an array in the same order
+	 */
+	this.parallel = function(operations, options) {
+		var timeout = MongoUtil.exists(options) && options.timeout
+		var concurrency = (MongoUtil.exists(options) && options.concurrency) || MongoDatabase.PARALLEL_CONCURRENCY
+		var deadline = timeout ? java.lang.System.currentTimeMillis() + timeout : 0
+		var results = operations instanceof Array ? [] : {}
+		var pending = []
+		
+		for (var name in operations) {
+			if (pending.length >= concurrency) {
+				collect(pending.shift())
+			}
+			try {
+				pending.push({name: name, future: start(this, operations[name])})
+			}
+			catch (x) {
+				results[name] = x instanceof MongoError ? x : new MongoError(x)
+			}
+		}
+		while (pending.length > 0) {
+			collect(pending.shift())
+		}
+		
+		return results
+
+		function start(database, operation) {
+			if (typeof operation == 'function') {
+				return operation(database)
+			}
+			var collection = database.collection(operation.collection).async()
+			switch (operation.operation) {
+			case 'find':
+				return collection.find(operation.filter, operation.options)
+			case 'findOne':
+				return collection.findOne(operation.filter, operation.options)
+			case 'count':
+				return collection.count(operation.filter, operation.options)
+			case 'aggregate':
+				return collection.aggregate(operation.pipeline, operation.options)
+			default:
+				throw new MongoError('Unsupported parallel operation: ' + operation.operation)
+			}
+		}
+		
+		function collect(entry) {
+			try {
+				if (deadline) {
+					// Even when past the deadline, give completed operations a chance
+					var remaining = deadline - java.lang.System.currentTimeMillis()
+					results[entry.name] = entry.future.get(remaining > 0 ? remaining : 1)
+				}
+				else {
+					results[entry.name] = entry.future.get()
+				}
+			}
+			catch (x) {
+				if (x instanceof MongoError) {
+					if ((x.exception instanceof java.util.concurrent.TimeoutException) && !MongoUtil.exists(x.message)) {
+						x.message = 'Timed out'
+					}
+					results[entry.name] = x
+				}
+				else {
+					results[entry.name] = new MongoError(x)
+				}
+			}
+		}
+	}
+	
 	//
 	// Diagnostics
 	//
@@ -886,6 +1007,9 @@ MongoDatabase.global = function(applicationService) {
 	return database
 }
 
+/** @constant */
+MongoDatabase.PARALLEL_CONCURRENCY = 16
+
 /**
  *
  * @class
@@ -988,7 +1112,95 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 			throw new MongoError(x)
 		}
 	}
-	
+
+	/**
+	 * Returns a collection that decodes the fields of the documents it reads only when they are
+	 * first accessed. Useful when only a few fields of large documents are used.
+	 *
+	 * @throws {MongoError}
+	 */
+	this.withLazyDocuments = function() {
+		try {
+			return new MongoCollection(this.collection.withDocumentClass(BSON.lazyDocumentClass), this.database)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * Returns a collection that learns the field names and types of its documents from the first
+	 * documents it reads, and uses them to decode the following documents faster. Useful for
+	 * collections with a stable schema. Documents that diverge from the learned fields are still
+	 * decoded correctly, just not faster.
+	 * <p>
+	 * Call this once and keep the returned collection: every call learns anew.
+	 *
+	 * @param {Number} [sampleSize=100] How many documents to learn from
+	 * @throws {MongoError}
+	 */
+	this.withDocumentTemplate = function(sampleSize) {
+		try {
+			var codecRegistry = BSON.getTemplateCodecRegistry(this.collection.codecRegistry, MongoUtil.exists(sampleSize) ? sampleSize : 100)
+			return new MongoCollection(this.collection.withCodecRegistry(codecRegistry), this.database)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * Returns a non-blocking version of this collection, using the async driver. Its operations
+	 * return a {@link MongoFuture} immediately, so that several operations can be in progress
+	 * at once.
+	 *
+	 * @returns {MongoAsyncCollection}
+	 * @throws {MongoError}
+	 */
+	this.async = function() {
+		try {
+			var collection = com.mongodb.jvm.async.MongoAsyncClients.getCollection(this.client.client, this.collection.namespace)
+			collection = collection.withReadPreference(this.collection.readPreference).withWriteConcern(this.collection.writeConcern).withReadConcern(this.collection.readConcern)
+			return new MongoAsyncCollection(collection, this)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * Returns a write-behind buffer for this collection, which sends writes in bulk from a
+	 * background thread. See {@link MongoWriteBehind}.
+	 * <p>
+	 * Call this once and share the returned buffer between threads: every call creates a new
+	 * buffer with its own thread, which is kept until you close the buffer.
+	 *
+	 * @param {Object} [options]
+	 * @param {Number} [options.batchSize=500] Maximum number of writes per bulk write; must be positive
+	 * @param {Number} [options.interval=1000] Maximum time in milliseconds that a write waits in the buffer;
+	 *  must be positive
+	 * @param {Number} [options.capacity=10000] Maximum number of writes in the buffer; must be positive
+	 * @param {Number} [options.timeout] When the buffer is full, how long in milliseconds to wait for room,
+	 *  waits indefinitely if not provided
+	 * @param {Boolean} [options.ordered=false] Whether the writes of each batch are applied in order,
+	 *  stopping at the first error
+	 * @param {Function} [options.onFlush] Called with the number of writes and the result (as in
+	 *  {@link MongoCollection#bulkWrite}) after each batch is written
+	 * @param {Function} [options.onError] Called with the {@link MongoError} and the number of writes
+	 *  when a batch could not be written, or was written only in part
+	 *  (see {@link MongoWriteBehind} for which thread calls these)
+	 * @returns {MongoWriteBehind}
+	 * @throws {MongoError}
+	 */
+	this.writeBehind = function(options) {
+		try {
+			return new MongoWriteBehind(this, options || {})
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
 	//
 	// Operations
 	//
@@ -1257,13 +1469,22 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 				i = this.collection.find()
 			}
 			else {
-				filter = BSON.to(filter)
+				filter = BSON.toRaw(filter)
 				i = this.collection.find(filter)
 			}
 			if (MongoUtil.exists(options)) {
 				MongoUtil.findIterable(i, options)
 			}
-			return new MongoCursor(i, this, filter)
+			var collection = this.collection
+			var rawIterable = function() {
+				var rawCollection = collection.withDocumentClass(BSON.rawDocumentClass)
+				var i = MongoUtil.exists(filter) ? rawCollection.find(filter) : rawCollection.find()
+				if (MongoUtil.exists(options)) {
+					MongoUtil.findIterable(i, options)
+				}
+				return i
+			}
+			return new MongoCursor(i, this, filter, rawIterable)
 		}
 		catch (x if !(x instanceof MongoError)) {
 			throw new MongoError(x)
@@ -1314,7 +1535,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 				return this.collection.count()
 			}
 			else {
-				filter = BSON.to(filter)
+				filter = BSON.toRaw(filter)
 				if (!MongoUtil.exists(options)) {
 					return this.collection.count(filter)
 				}
@@ -1583,7 +1804,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.deleteMany = function(filter) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			var result = this.collection.deleteMany(filter)
 			return MongoUtil.deleteResult(result)
 		}
@@ -1599,7 +1820,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.deleteOne = function(filter) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			var result = this.collection.deleteOne(filter)
 			return MongoUtil.deleteResult(result)
 		}
@@ -1617,7 +1838,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.findOneAndDelete = function(filter, options) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			if (!MongoUtil.exists(options)) {
 				result = this.collection.findOneAndDelete(filter)
 			}
@@ -1646,7 +1867,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.replaceOne = function(filter, replacement, options) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			if (!MongoUtil.exists(options)) {
 				result = this.collection.replaceOne(filter, replacement)
 			}
@@ -1672,7 +1893,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.findOneAndReplace = function(filter, replacement, options) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			if (!MongoUtil.exists(options)) {
 				result = this.collection.findOneAndReplace(filter, replacement)
 			}
@@ -1701,7 +1922,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.updateMany = function(filter, update, options) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			update = BSON.to(update)
 			if (!MongoUtil.exists(options)) {
 				result = this.collection.updateMany(filter, update)
@@ -1727,7 +1948,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.updateOne = function(filter, update, options) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			update = BSON.to(update)
 			if (!MongoUtil.exists(options)) {
 				result = this.collection.updateOne(filter, update)
@@ -1754,7 +1975,7 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.findOneAndUpdate = function(filter, update, options) {
 		try {
-			filter = BSON.to(filter)
+			filter = BSON.toRaw(filter)
 			update = BSON.to(update)
 			if (!MongoUtil.exists(options)) {
 				result = this.collection.findOneAndUpdate(filter, update)
@@ -1814,6 +2035,9 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 
 	/**
 	 * type can be 'deleteMany', 'deleteOne', 'insertOne', 'replaceOne', 'updateMany', 'updateOne'
+	 * <p>
+	 * Operations are converted to write models in Java in a single pass. The driver
+	 * splits them into batches of at most the server's maximum write batch size.
 	 *
 	 * @param {Object} [options]
 	 * @param {Boolean} [options.ordered]
@@ -1821,14 +2045,24 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
 	 */
 	this.bulkWrite = function(operations, options) {
 		try {
-			operations = MongoUtil.writeModels(operations)
-			if (!MongoUtil.exists(options)) {
-				this.collection.bulkeWrite(operations)
+			var result
+			if (MongoUtil.hasWriteModels(operations)) {
+				// Some are already write models
+				operations = MongoUtil.writeModelList(operations)
+				if (!MongoUtil.exists(options)) {
+					result = this.collection.bulkWrite(operations)
+				}
+				else {
+					result = this.collection.bulkWrite(operations, MongoUtil.bulkWriteOptions(options))
+				}
 			}
 			else {
-				options = MongoUtil.bulkWriteOptions(options)
-				this.collection.bulkeWrite(operations, options)
+				if (MongoUtil.exists(options)) {
+					options = MongoUtil.bulkWriteOptions(options)
+				}
+				result = com.mongodb.jvm.BulkWriteUtil.bulkWrite(this.collection, operations, options || null)
 			}
+			return MongoUtil.bulkWriteResult(result)
 		}
 		catch (x if !(x instanceof MongoError)) {
 			throw new MongoError(x)
@@ -1994,14 +2228,19 @@ var MongoCollection = function(uri /* or collection */, options /* or database *
  *   c.close()
  * }
  * </pre>
+ * <p>
+ * When reading many documents, prefer {@link MongoCursor#forEach}, {@link MongoCursor#toArray}
+ * or {@link MongoCursor#nextBatch}, which read a whole batch of documents in a single call
+ * instead of calling into the driver once per document.
  * 
  * @class
  * @see See the <a href="http://api.mongodb.org/java/current/index.html?com/mongodb/client/MongoCursor.html">Java API</a>
  */
-var MongoCursor = function(iterable, collection, filter) {
+var MongoCursor = function(iterable, collection, filter, rawIterable) {
 	this.iterable = iterable
 	this.collection = collection
 	this.filter = filter
+	this.rawIterable = rawIterable
 	this.cursor = null
 	
 	/**
@@ -2065,6 +2304,61 @@ var MongoCursor = function(iterable, collection, filter) {
 		}
 	}
 	
+	/**
+	 * Reads the next documents in a single call. Set the batch size of the
+	 * query to the same number to have each call correspond to a server batch.
+	 *
+	 * @param {Number} [size=MongoCursor.DEFAULT_BATCH_SIZE] Maximum number of documents
+	 * @returns {Object[]} The documents, an empty array if there are no more
+	 * @throws {MongoError}
+	 */
+	this.nextBatch = function(size) {
+		try {
+			if (null === this.cursor) {
+				this.cursor = iterable.iterator()
+			}
+			return com.mongodb.jvm.MongoCursorUtil.nextBatch(this.cursor, size || MongoCursor.DEFAULT_BATCH_SIZE)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
+	/**
+	 * Reads all remaining documents in a single call.
+	 *
+	 * @param {Number} [limit] Maximum number of documents
+	 * @returns {Object[]} The documents
+	 * @throws {MongoError}
+	 */
+	this.toArray = function(limit) {
+		try {
+			if (null === this.cursor) {
+				this.cursor = iterable.iterator()
+			}
+			return com.mongodb.jvm.MongoCursorUtil.toArray(this.cursor, limit || 0)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
+	/**
+	 * Calls a function for each remaining document, reading the documents in
+	 * batches (see {@link MongoCursor#nextBatch}).
+	 *
+	 * @param {Function} fn Called with each document
+	 * @param {Number} [size=MongoCursor.DEFAULT_BATCH_SIZE] Batch size
+	 * @throws {MongoError}
+	 */
+	this.forEach = function(fn, size) {
+		for (var batch = this.nextBatch(size); batch.length > 0; batch = this.nextBatch(size)) {
+			for (var i = 0, length = batch.length; i < length; i++) {
+				fn(batch[i])
+			}
+		}
+	}
+	
 	/**
 	 * @throws {MongoError}
 	 */
@@ -2079,65 +2373,686 @@ var MongoCursor = function(iterable, collection, filter) {
 			throw new MongoError(x)
 		}
 	}
+
+	/**
+	 * Writes all documents as a JSON array in extended JSON, streaming them
+	 * directly from BSON. Memory use does not depend on the number of documents.
+	 * Uses its own server cursor, which is closed when done.
+	 * <p>
+	 * The documents of {@link MongoCollection#find} cursors are read as raw BSON and
+	 * are never decoded into JavaScript objects.
+	 *
+	 * @param {java.io.Writer|java.io.OutputStream} out
+	 * @throws {MongoError}
+	 */
+	this.writeJson = function(out) {
+		try {
+			var iterable = MongoUtil.exists(this.rawIterable) ? this.rawIterable() : this.iterable
+			com.mongodb.jvm.json.ExtendedJsonWriter.write(iterable, out)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
 }
 
+/** @constant */
+MongoCursor.DEFAULT_BATCH_SIZE = 100
+
 /**
+ * A non-blocking version of a {@link MongoCollection}, using the async driver. Get it
+ * with {@link MongoCollection#async}.
+ * <p>
+ * Operations return a {@link MongoFuture} immediately. Documents are encoded on the calling
+ * thread, and results are decoded on the thread that calls {@link MongoFuture#get}, so scripts
+ * never run on the driver's threads:
+ * <p>
+ * <pre>
+ * var users = db.collection('users').async()
+ * var posts = db.collection('posts').async()
+ * var user = users.findOne({name: 'tal'})
+ * var recent = posts.find({}, {sort: {date: -1}, limit: 10})
+ * var results = MongoFuture.all([user, recent])
+ * </pre>
  *
  * @class
- * @see See the <a href="http://api.mongodb.org/java/current/index.html?com/mongodb/MongoException.html">Java API</a>
+ * @see See the <a href="http://api.mongodb.org/java/current/index.html?com/mongodb/async/client/MongoCollection.html">Java API</a>
  */
-var MongoError = function(x) {
-	if (MongoUtil.exists(x.javaException)) {
-		// For Rhino, unwrap
-		x = x.javaException
+var MongoAsyncCollection = function(collection, syncCollection) {
+	var aggregateIterable = function(collection, pipeline, options) {
+		var stages = new java.util.ArrayList(pipeline.length)
+		for (var p in pipeline) {
+			stages.add(BSON.toRaw(pipeline[p]))
+		}
+		var i = collection.aggregate(stages)
+		if (MongoUtil.exists(options)) {
+			MongoUtil.aggregateIterable(i, options)
+		}
+		return i
 	}
 	
-	this.exception = x
-	
-	if (x instanceof com.mongodb.MongoCommandException) {
-		this.code = x.code
-		this.message = x.message
-		this.serverAddress = String(x.serverAddress)
-		this.response = x.response
+	var toCursor = function(cursor) {
+		return new MongoAsyncCursor(cursor)
 	}
-	else if (x instanceof com.mongodb.MongoBulkWriteException) {
-		this.code = x.code
-		this.message = x.message
-		this.serverAddress = String(x.serverAddress)
-		var writeConcern = x.writeConcernError
-		if (MongoUtil.exists(writeConcern)) {
-			this.writeConcern = {
-				code: writeConcern.code,
-				message: writeConcern.message,
-				details: writeConcern.details
+	
+	/** @field */
+	this.collection = collection
+	
+	/**
+	 * The blocking version of this collection.
+	 * 
+	 * @field
+	 */
+	this.syncCollection = syncCollection
+	
+	//
+	// Queries
+	//
+
+	/**
+	 * All the results are held in memory at once. For large results use
+	 * {@link MongoAsyncCollection#findCursor} instead.
+	 *
+	 * @param {Object} [filter]
+	 * @param {Object} [options] The same options as {@link MongoCollection#find}
+	 * @returns {MongoFuture} Resolves to an array of documents
+	 * @throws {MongoError}
+	 */
+	this.find = function(filter, options) {
+		try {
+			var i = this.collection.find(BSON.toRaw(filter || {}))
+			if (MongoUtil.exists(options)) {
+				MongoUtil.findIterable(i, options)
 			}
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			i.into(new java.util.ArrayList(), future)
+			return new MongoFuture(future)
 		}
-		var writeErrors = x.writeErrors
-		if (MongoUtil.exists(writeErrors)) {
-			this.writeErrors = []
-			var i = writeErrors.iterator()
-			while (i.hasNext()) {
-				var writeError = i.next()
-				this.writeErrors.push({
-					index: writeError.index,
-					code: writeError.code,
-					message: writeError.message,
-					category: String(writeError.category),
-					details: writeError.details
-				})
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * Like {@link MongoAsyncCollection#find}, but the results are fetched in batches.
+	 *
+	 * @param {Object} [filter]
+	 * @param {Object} [options] The same options as {@link MongoCollection#find}
+	 * @returns {MongoFuture} Resolves to a {@link MongoAsyncCursor}
+	 * @throws {MongoError}
+	 */
+	this.findCursor = function(filter, options) {
+		try {
+			var i = this.collection.find(BSON.toRaw(filter || {}))
+			if (MongoUtil.exists(options)) {
+				MongoUtil.findIterable(i, options)
 			}
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			i.batchCursor(future)
+			return new MongoFuture(future, toCursor)
 		}
-		var writeResult = x.writeResult
-		if (MongoUtil.exists(writeResult)) {
-			this.writeResult = MongoUtil.bulkWriteResult(writeResult)
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
 		}
 	}
-	else if (x instanceof com.mongodb.MongoServerException) {
-		this.code = x.code
-		this.message = x.message
-		this.serverAddress = String(x.serverAddress)
+
+	/**
+	 * @param {Object} [filter]
+	 * @param {Object} [options] The same options as {@link MongoCollection#find}
+	 * @returns {MongoFuture} Resolves to a document or null
+	 * @throws {MongoError}
+	 */
+	this.findOne = function(filter, options) {
+		try {
+			var i = this.collection.find(BSON.toRaw(filter || {}))
+			if (MongoUtil.exists(options)) {
+				MongoUtil.findIterable(i, options)
+			}
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			i.first(future)
+			return new MongoFuture(future)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
 	}
-	else if (x instanceof com.mongodb.MongoException) {
+
+	/**
+	 * @param {Object} [filter]
+	 * @param {Object} [options] The same options as {@link MongoCollection#count}
+	 * @returns {MongoFuture} Resolves to a number
+	 * @throws {MongoError}
+	 */
+	this.count = function(filter, options) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			if (!MongoUtil.exists(options)) {
+				this.collection.count(BSON.toRaw(filter || {}), future)
+			}
+			else {
+				this.collection.count(BSON.toRaw(filter || {}), MongoUtil.countOptions(options), future)
+			}
+			return new MongoFuture(future, Number)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * All the results are held in memory at once. For large results use
+	 * {@link MongoAsyncCollection#aggregateCursor} instead.
+	 *
+	 * @param {Object[]} pipeline
+	 * @param {Object} [options] The same options as {@link MongoCollection#aggregate}
+	 * @returns {MongoFuture} Resolves to an array of documents
+	 * @throws {MongoError}
+	 */
+	this.aggregate = function(pipeline, options) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			aggregateIterable(this.collection, pipeline, options).into(new java.util.ArrayList(), future)
+			return new MongoFuture(future)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * Like {@link MongoAsyncCollection#aggregate}, but the results are fetched in batches.
+	 *
+	 * @param {Object[]} pipeline
+	 * @param {Object} [options] The same options as {@link MongoCollection#aggregate}
+	 * @returns {MongoFuture} Resolves to a {@link MongoAsyncCursor}
+	 * @throws {MongoError}
+	 */
+	this.aggregateCursor = function(pipeline, options) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			aggregateIterable(this.collection, pipeline, options).batchCursor(future)
+			return new MongoFuture(future, toCursor)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	//
+	// Insertion
+	//
+
+	/**
+	 * @param {Object} doc
+	 * @returns {MongoFuture} Resolves to null
+	 * @throws {MongoError}
+	 */
+	this.insertOne = function(doc) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			this.collection.insertOne(BSON.toRaw(doc), future)
+			return new MongoFuture(future)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * @param {Object[]} docs
+	 * @param {Object} [options] The same options as {@link MongoCollection#insertMany}
+	 * @returns {MongoFuture} Resolves to null
+	 * @throws {MongoError}
+	 */
+	this.insertMany = function(docs, options) {
+		try {
+			var list = new java.util.ArrayList(docs.length)
+			for (var d in docs) {
+				list.add(BSON.toRaw(docs[d]))
+			}
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			if (!MongoUtil.exists(options)) {
+				this.collection.insertMany(list, future)
+			}
+			else {
+				this.collection.insertMany(list, MongoUtil.insertManyOptions(options), future)
+			}
+			return new MongoFuture(future)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
+	//
+	// Deletion
+	//
+
+	/**
+	 * @param {Object} filter
+	 * @returns {MongoFuture} Resolves to the same result as {@link MongoCollection#deleteMany}
+	 * @throws {MongoError}
+	 */
+	this.deleteMany = function(filter) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			this.collection.deleteMany(BSON.toRaw(filter), future)
+			return new MongoFuture(future, MongoUtil.deleteResult)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * @param {Object} filter
+	 * @returns {MongoFuture} Resolves to the same result as {@link MongoCollection#deleteOne}
+	 * @throws {MongoError}
+	 */
+	this.deleteOne = function(filter) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			this.collection.deleteOne(BSON.toRaw(filter), future)
+			return new MongoFuture(future, MongoUtil.deleteResult)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
+	//
+	// Replacement and update
+	//
+
+	/**
+	 * @param {Object} filter
+	 * @param {Object} replacement
+	 * @param {Object} [options]
+	 * @param {Boolean} [options.upsert]
+	 * @returns {MongoFuture} Resolves to the same result as {@link MongoCollection#replaceOne}
+	 * @throws {MongoError}
+	 */
+	this.replaceOne = function(filter, replacement, options) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			this.collection.replaceOne(BSON.toRaw(filter), BSON.toRaw(replacement), MongoUtil.updateOptions(options || {}), future)
+			return new MongoFuture(future, MongoUtil.updateResult)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * @param {Object} filter
+	 * @param {Object} update
+	 * @param {Object} [options]
+	 * @param {Boolean} [options.upsert]
+	 * @returns {MongoFuture} Resolves to the same result as {@link MongoCollection#updateMany}
+	 * @throws {MongoError}
+	 */
+	this.updateMany = function(filter, update, options) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			this.collection.updateMany(BSON.toRaw(filter), BSON.to(update), MongoUtil.updateOptions(options || {}), future)
+			return new MongoFuture(future, MongoUtil.updateResult)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * @param {Object} filter
+	 * @param {Object} update
+	 * @param {Object} [options]
+	 * @param {Boolean} [options.upsert]
+	 * @returns {MongoFuture} Resolves to the same result as {@link MongoCollection#updateOne}
+	 * @throws {MongoError}
+	 */
+	this.updateOne = function(filter, update, options) {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			this.collection.updateOne(BSON.toRaw(filter), BSON.to(update), MongoUtil.updateOptions(options || {}), future)
+			return new MongoFuture(future, MongoUtil.updateResult)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+}
+
+/**
+ * The pending result of a {@link MongoAsyncCollection} operation.
+ *
+ * @class
+ * @param {com.mongodb.jvm.async.MongoFuture} future
+ * @param {Function} [transform] Applied to the decoded result
+ */
+var MongoFuture = function(future, transform) {
+
+	/** @field */
+	this.future = future
+	
+	/**
+	 * Whether the operation has completed, successfully or not.
+	 *
+	 * @returns {Boolean}
+	 */
+	this.isDone = function() {
+		return this.future.done
+	}
+	
+	/**
+	 * Waits for the operation to complete.
+	 *
+	 * @param {Number} [timeout] Timeout in milliseconds, waits indefinitely if not provided
+	 * @returns The result
+	 * @throws {MongoError} If the operation failed or timed out
+	 */
+	this.get = function(timeout) {
+		try {
+			var result = this.future.getDecoded(timeout || 0)
+			return MongoUtil.exists(transform) && (null !== result) ? transform(result) : result
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+}
+
+/**
+ * Waits for several futures to complete.
+ *
+ * @param {MongoFuture[]} futures
+ * @param {Number} [timeout] Timeout in milliseconds for each future, waits indefinitely if not provided
+ * @returns {Array} The results, in the same order as the futures
+ * @throws {MongoError} If any of the operations failed or timed out
+ */
+MongoFuture.all = function(futures, timeout) {
+	var results = []
+	for (var f in futures) {
+		results.push(futures[f].get(timeout))
+	}
+	return results
+}
+
+/**
+ * An async cursor, which fetches results in batches. Get it with
+ * {@link MongoAsyncCollection#findCursor} or {@link MongoAsyncCollection#aggregateCursor}.
+ * <p>
+ * Only one batch can be requested at a time: get the future of a batch before requesting the
+ * next one. Like other results, batches are decoded on the thread that calls
+ * {@link MongoFuture#get}.
+ * <p>
+ * <pre>
+ * var cursor = posts.findCursor({}, {batchSize: 100}).get()
+ * try {
+ *   for (var batch = cursor.nextBatch().get(); null !== batch; batch = cursor.nextBatch().get()) {
+ *     ...
+ *   }
+ * }
+ * finally {
+ *   cursor.close()
+ * }
+ * </pre>
+ *
+ * @class
+ * @see See the <a href="http://api.mongodb.org/java/current/index.html?com/mongodb/async/AsyncBatchCursor.html">Java API</a>
+ */
+var MongoAsyncCursor = function(cursor) {
+
+	/** @field */
+	this.cursor = cursor
+
+	/**
+	 * Fetches the next batch.
+	 *
+	 * @returns {MongoFuture} Resolves to an array of documents, or null if there are no more
+	 * @throws {MongoError}
+	 */
+	this.nextBatch = function() {
+		try {
+			var future = new com.mongodb.jvm.async.MongoFuture()
+			this.cursor.next(future)
+			return new MongoFuture(future)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+
+	/**
+	 * Whether the cursor is closed, either because all batches were fetched or because
+	 * {@link MongoAsyncCursor#close} was called.
+	 *
+	 * @returns {Boolean}
+	 */
+	this.isClosed = function() {
+		return this.cursor.closed
+	}
+
+	/**
+	 * Closes the cursor on the server, if it is still open.
+	 */
+	this.close = function() {
+		this.cursor.close()
+	}
+}
+
+/**
+ * A write-behind buffer for a {@link MongoCollection}: writes are buffered and sent as bulk
+ * writes from a background thread, so that many small writes cost a few round trips instead of
+ * one each. Get it with {@link MongoCollection#writeBehind}.
+ * <p>
+ * A batch is written when there are enough writes for it, when the interval passes, when
+ * {@link MongoWriteBehind#flush} or {@link MongoWriteBehind#close} are called, and when the JVM
+ * shuts down. When the buffer is full, writing blocks until there is room.
+ * <p>
+ * Writes are acknowledged only by the onFlush and onError callbacks. They are not called from the
+ * background thread, but from whichever thread next writes to the buffer, flushes it, closes it
+ * or calls {@link MongoWriteBehind#poll}. Failed batches are not retried. Documents are encoded
+ * when they are written to the buffer, so changing them afterwards has no effect.
+ * <p>
+ * Close the buffer before closing the client. A buffer that is never closed is kept in memory,
+ * together with its background thread, until the JVM shuts down.
+ *
+ * @class
+ * @see com.mongodb.jvm.WriteBehindBuffer
+ */
+var MongoWriteBehind = function(collection, options) {
+	// The buffer's thread only queues reports, which are handled on our threads by poll()
+	var listener = null
+	if (MongoUtil.exists(options.onFlush) || MongoUtil.exists(options.onError)) {
+		listener = new com.mongodb.jvm.WriteBehindBuffer.QueueListener()
+	}
+	var bulkWriteOptions = new com.mongodb.client.model.BulkWriteOptions().ordered(MongoUtil.exists(options.ordered) ? options.ordered : false)
+	
+	/** @field */
+	this.collection = collection
+	
+	/** @field */
+	this.buffer = new com.mongodb.jvm.WriteBehindBuffer(collection.collection,
+		options.batchSize || 500, options.interval || 1000, options.capacity || 10000, options.timeout || 0, bulkWriteOptions, listener)
+	
+	/**
+	 * @param {Object} doc
+	 * @throws {MongoError}
+	 */
+	this.insertOne = function(doc) {
+		this.poll()
+		try {
+			this.buffer.add(new com.mongodb.client.model.InsertOneModel(BSON.toRaw(doc)))
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
+	/**
+	 * @param {Object} filter
+	 * @param {Object} update
+	 * @param {Object} [options]
+	 * @param {Boolean} [options.upsert]
+	 * @throws {MongoError}
+	 */
+	this.updateOne = function(filter, update, options) {
+		this.poll()
+		try {
+			var model
+			if (!MongoUtil.exists(options)) {
+				model = new com.mongodb.client.model.UpdateOneModel(BSON.toRaw(filter), BSON.to(update))
+			}
+			else {
+				model = new com.mongodb.client.model.UpdateOneModel(BSON.toRaw(filter), BSON.to(update), MongoUtil.updateOptions(options))
+			}
+			this.buffer.add(model)
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
+	/**
+	 * Buffers any kind of writes.
+	 *
+	 * @param {Object[]} operations The same operations as {@link MongoCollection#bulkWrite}
+	 * @throws {MongoError}
+	 */
+	this.bulkWrite = function(operations) {
+		this.poll()
+		try {
+			if (MongoUtil.hasWriteModels(operations)) {
+				// Some are already write models
+				this.buffer.addAll(MongoUtil.writeModelList(operations, true))
+			}
+			else {
+				this.buffer.addAll(com.mongodb.jvm.BulkWriteUtil.toWriteModels(operations, this.collection.collection.codecRegistry))
+			}
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+	}
+	
+	/**
+	 * Writes all buffered writes now, on the calling thread.
+	 *
+	 * @throws {MongoError}
+	 */
+	this.flush = function() {
+		try {
+			this.buffer.flush()
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+		this.poll()
+	}
+	
+	/**
+	 * Writes all buffered writes and stops the background thread. Further writes will fail.
+	 * Until this is called the buffer and its thread are kept, even if it is no longer used.
+	 *
+	 * @throws {MongoError}
+	 */
+	this.close = function() {
+		try {
+			this.buffer.close()
+		}
+		catch (x if !(x instanceof MongoError)) {
+			throw new MongoError(x)
+		}
+		this.poll()
+	}
+	
+	/**
+	 * Calls onFlush and onError for the batches written since the last call, on the calling
+	 * thread. The other methods call it, too.
+	 */
+	this.poll = function() {
+		if (null === listener) {
+			return
+		}
+		for (var report = listener.poll(); null !== report; report = listener.poll()) {
+			if (null === report.error) {
+				if (MongoUtil.exists(options.onFlush)) {
+					options.onFlush(report.count, MongoUtil.bulkWriteResult(report.result))
+				}
+			}
+			else if (MongoUtil.exists(options.onError)) {
+				options.onError(new MongoError(report.error), report.count)
+			}
+		}
+	}
+	
+	/**
+	 * The number of writes waiting in the buffer.
+	 *
+	 * @returns {Number}
+	 */
+	this.pending = function() {
+		return this.buffer.pending
+	}
+}
+
+/**
+ *
+ * @class
+ * @see See the <a href="http://api.mongodb.org/java/current/index.html?com/mongodb/MongoException.html">Java API</a>
+ */
+var MongoError = function(x) {
+	if (MongoUtil.exists(x.javaException)) {
+		// For Rhino, unwrap
+		x = x.javaException
+	}
+	
+	this.exception = x
+	
+	if (x instanceof com.mongodb.MongoCommandException) {
+		this.code = x.code
+		this.message = x.message
+		this.serverAddress = String(x.serverAddress)
+		this.response = x.response
+	}
+	else if (x instanceof com.mongodb.MongoBulkWriteException) {
+		this.code = x.code
+		this.message = x.message
+		this.serverAddress = String(x.serverAddress)
+		var writeConcern = x.writeConcernError
+		if (MongoUtil.exists(writeConcern)) {
+			this.writeConcern = {
+				code: writeConcern.code,
+				message: writeConcern.message,
+				details: writeConcern.details
+			}
+		}
+		var writeErrors = x.writeErrors
+		if (MongoUtil.exists(writeErrors)) {
+			this.writeErrors = []
+			var i = writeErrors.iterator()
+			while (i.hasNext()) {
+				var writeError = i.next()
+				this.writeErrors.push({
+					index: writeError.index,
+					code: writeError.code,
+					message: writeError.message,
+					category: String(writeError.category),
+					details: writeError.details
+				})
+			}
+		}
+		var writeResult = x.writeResult
+		if (MongoUtil.exists(writeResult)) {
+			this.writeResult = MongoUtil.bulkWriteResult(writeResult)
+		}
+	}
+	else if (x instanceof com.mongodb.MongoServerException) {
+		this.code = x.code
+		this.message = x.message
+		this.serverAddress = String(x.serverAddress)
+	}
+	else if (x instanceof com.mongodb.MongoException) {
 		this.code = x.code
 		this.message = x.message
 	}
@@ -2497,11 +3412,24 @@ var MongoUtil = function() {
 		return list
 	}
 	
-	Public.writeModelList = function(array) {
+	/**
+	 * Whether any of the entries is a Java write model rather than a descriptor. Such arrays
+	 * can't be encoded in one pass (see com.mongodb.jvm.BulkWriteUtil).
+	 */
+	Public.hasWriteModels = function(array) {
+		for (var a in array) {
+			if (array[a] instanceof com.mongodb.client.model.WriteModel) {
+				return true
+			}
+		}
+		return false
+	}
+
+	Public.writeModelList = function(array, encode) {
 		var list = new java.util.ArrayList(array.length)
 		for (var a in array) {
 			var entry = array[a]
-			entry = Public.writeModel(entry)
+			entry = Public.writeModel(entry, encode)
 			list.add(entry)
 		}
 		return list
@@ -2693,7 +3621,7 @@ var MongoUtil = function() {
 	Public.bulkWriteOptions = function(options) {
 		if (!(options instanceof com.mongodb.client.model.BulkWriteOptions)) {
 			var bulkWriteOptions = new com.mongodb.client.model.BulkWriteOptions()
-			Public.applyOptions(renameCollectionOptions, options, ['ordered'])
+			Public.applyOptions(bulkWriteOptions, options, ['ordered'])
 			options = bulkWriteOptions
 		}
 		return options
@@ -2738,10 +3666,24 @@ var MongoUtil = function() {
 	// Models
 
 	/**
+	 * @param {Object} model
+	 * @param {Boolean} [encode=false] Whether to encode the documents now, as raw BSON, rather
+	 *  than when the model is written
 	 * @throws {MongoError}
 	 */
-	Public.writeModel = function(model) {
+	Public.writeModel = function(model, encode) {
 		if (!(model instanceof com.mongodb.client.model.WriteModel)) {
+			if (encode) {
+				model = {
+					type: model.type,
+					filter: Public.exists(model.filter) ? BSON.toRaw(model.filter) : model.filter,
+					document: Public.exists(model.document) ? BSON.toRaw(model.document) : model.document,
+					replacement: Public.exists(model.replacement) ? BSON.toRaw(model.replacement) : model.replacement,
+					// Not raw, so that the driver still validates the update operators
+					update: Public.exists(model.update) ? BSON.to(model.update) : model.update,
+					options: model.options
+				}
+			}
 			switch (model.type) {
 			case 'deleteMany':
 				model = new com.mongodb.client.model.DeleteManyModel(model.filter)
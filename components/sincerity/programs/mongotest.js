@@ -53,6 +53,11 @@ try {
 	println(' From extended JSON: ' + Sincerity.JSON.to(Sincerity.JSON.from(extended, true), true))
 	println(' To BSON: ' + BSON.to(data))
 
+	var isoDate = BSON.fromJson('{d: {$date: "2015-01-01T00:00:00Z"}}').get('d')
+	if (!isoDate.isDateTime() || (isoDate.value != 1420070400000)) {
+		throw new MongoError('ISO-8601 $date was not parsed as a date: ' + isoDate)
+	}
+	println(' ISO-8601 $date from JSON: ' + isoDate.value)
 
 	// Databases
 	println('\nDatabases:')
@@ -126,6 +131,95 @@ try {
 		}
 	}
 	
+	// Bulk write
+	println('\nBulk write:')
+
+	var bulk = db.collection('bulk')
+	bulk.drop()
+	var operations = []
+	for (var i = 0; i < 1500; i++) {
+		operations.push({type: 'insertOne', document: {_id: i}})
+	}
+	operations.push({type: 'updateOne', filter: {_id: 1500}, update: {$set: {n: 1}}, options: {upsert: true}})
+	var result = bulk.bulkWrite(operations)
+	if ((result.insertedCount != 1500) || (result.upserts[0].index != 1500)) {
+		throw new MongoError('Bulk write result is not for the whole array: ' + Sincerity.JSON.to(result))
+	}
+	println(' Inserted: ' + result.insertedCount + ', upserted at: ' + result.upserts[0].index)
+
+	// A duplicate _id beyond the first batch
+	operations = []
+	for (var i = 0; i < 1200; i++) {
+		operations.push({type: 'insertOne', document: {_id: i == 1100 ? 0 : 'x' + i}})
+	}
+	try {
+		bulk.bulkWrite(operations, {ordered: true})
+		throw new MongoError('Ordered bulk write did not fail')
+	}
+	catch (x) {
+		if (!x.hasCode(MongoError.DUPLICATE_KEY) || (x.writeErrors[0].index != 1100) || (x.writeResult.insertedCount != 1100)) {
+			throw x
+		}
+		println(' Ordered: failed at ' + x.writeErrors[0].index + ', inserted ' + x.writeResult.insertedCount)
+	}
+	bulk.drop()
+	try {
+		bulk.bulkWrite(operations, {ordered: false})
+		throw new MongoError('Unordered bulk write did not fail')
+	}
+	catch (x) {
+		if (!x.hasCode(MongoError.DUPLICATE_KEY) || (x.writeErrors.length != 1) || (x.writeErrors[0].index != 1100) || (x.writeResult.insertedCount != 1199)) {
+			throw x
+		}
+		println(' Unordered: failed at ' + x.writeErrors[0].index + ', inserted ' + x.writeResult.insertedCount)
+	}
+	bulk.drop()
+
+	// Write-behind
+	println('\nWrite-behind:')
+
+	var flushed = 0, failed = 0
+	var writeBehind = bulk.writeBehind({batchSize: 10, interval: 60000,
+		onFlush: function(count, result) { flushed += result.insertedCount },
+		onError: function(error, count) { failed += count }})
+	try {
+		for (var i = 0; i < 25; i++) {
+			writeBehind.insertOne({_id: i})
+		}
+		writeBehind.flush()
+		// A duplicate _id in a batch of its own
+		writeBehind.insertOne({_id: 0})
+	}
+	finally {
+		// Waits for the background thread, and reports all batches
+		writeBehind.close()
+	}
+	if ((flushed != 25) || (failed != 1) || (writeBehind.pending() != 0) || (bulk.count() != 25)) {
+		throw new MongoError('Write-behind lost writes: flushed ' + flushed + ', failed ' + failed + ', pending ' + writeBehind.pending())
+	}
+	println(' Flushed: ' + flushed + ', failed: ' + failed)
+	var rejected = false
+	try {
+		writeBehind.insertOne({_id: 100})
+	}
+	catch (x) {
+		rejected = true
+	}
+	if (!rejected) {
+		throw new MongoError('Write-behind accepted a write after closing')
+	}
+	rejected = false
+	try {
+		bulk.writeBehind({batchSize: -1})
+	}
+	catch (x) {
+		rejected = x.exception instanceof java.lang.IllegalArgumentException
+	}
+	if (!rejected) {
+		throw new MongoError('Write-behind accepted a negative batch size')
+	}
+	bulk.drop()
+
 	// Find
 	println('\nFind:')
 
@@ -139,7 +233,67 @@ try {
 	finally {
 		cursor.close()
 	}
-	
+
+	println(' In batches:')
+	cursor = collection.find({name: {$exists: true}}, {sort: {name: -1}})
+	try {
+		for (var batch = cursor.nextBatch(-2); batch.length > 0; batch = cursor.nextBatch(-2)) {
+			println('  ' + batch.length + ': ' + Sincerity.JSON.to(batch))
+		}
+	}
+	finally {
+		cursor.close()
+	}
+
+	cursor = collection.find({name: {$exists: true}}, {sort: {name: -1}})
+	try {
+		println(' As an array: ' + Sincerity.JSON.to(cursor.toArray(-1)))
+	}
+	finally {
+		cursor.close()
+	}
+
+	println(' For each:')
+	cursor = collection.find({name: {$exists: true}}, {sort: {name: -1}})
+	try {
+		cursor.forEach(function(doc) {
+			println('  ' + doc.name)
+		}, 2)
+	}
+	finally {
+		cursor.close()
+	}
+
+	// Async
+	println('\nAsync:')
+
+	var async = collection.async()
+	var futures = [
+		async.findOne({name: 'Linus'}),
+		async.find({name: {$exists: true}}, {sort: {name: 1}}),
+		async.count({name: {$exists: true}})
+	]
+	var results = MongoFuture.all(futures)
+	println(' Find one: ' + Sincerity.JSON.to(results[0]))
+	println(' Find: ' + Sincerity.JSON.to(results[1]))
+	println(' Count: ' + results[2])
+
+	println(' Find in batches:')
+	cursor = async.findCursor({name: {$exists: true}}, {sort: {name: 1}, batchSize: 2}).get()
+	try {
+		var count = 0
+		for (var batch = cursor.nextBatch().get(); null !== batch; batch = cursor.nextBatch().get()) {
+			println('  ' + batch.length + ': ' + Sincerity.JSON.to(batch))
+			count += batch.length
+		}
+		if (count != results[2]) {
+			throw new MongoError('Async cursor returned ' + count + ' documents instead of ' + results[2])
+		}
+	}
+	finally {
+		cursor.close()
+	}
+
 	// Group
 	println('\nGroup:')
 